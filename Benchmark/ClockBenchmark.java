@@ -0,0 +1,121 @@
+package Benchmark;
+
+import Utils.LogicalClock;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Contention benchmark for {@link LogicalClock}.
+ * <p>
+ * Several threads share one clock, as the PassRoad, TrafficLight and
+ * Receiver threads of a crossroad do, and mix {@code tick()} with
+ * {@code update(received)} calls. The lock-free clock is compared against
+ * the previous monitor-based implementation ({@link MonitorClock}).
+ * <p>
+ * Usage: {@code java Benchmark.ClockBenchmark [threads] [opsPerThread] [rounds]}
+ */
+public class ClockBenchmark {
+
+    /**
+     * Clock operations shared by both implementations.
+     */
+    private interface BenchClock {
+        long tick();
+
+        long update(long received);
+    }
+
+    /**
+     * The monitor-based clock that {@link LogicalClock} replaced.
+     */
+    private static final class MonitorClock implements BenchClock {
+        private long time = 0;
+
+        @Override
+        public synchronized long tick() {
+            return ++time;
+        }
+
+        @Override
+        public synchronized long update(long received) {
+            time = Math.max(time, received) + 1;
+            return time;
+        }
+    }
+
+    /**
+     * Adapter for the lock-free {@link LogicalClock}.
+     */
+    private static final class AtomicClock implements BenchClock {
+        private final LogicalClock clock = new LogicalClock();
+
+        @Override
+        public long tick() {
+            return clock.tick();
+        }
+
+        @Override
+        public long update(long received) {
+            return clock.update(received);
+        }
+    }
+
+    /**
+     * Run one measurement: {@code threads} threads perform
+     * {@code opsPerThread} operations each; one in four is an update.
+     *
+     * @param clock        clock under test
+     * @param threads      number of threads
+     * @param opsPerThread operations performed by each thread
+     * @return elapsed time in nanoseconds
+     * @throws InterruptedException if interrupted while waiting for threads
+     */
+    private static long run(BenchClock clock, int threads, int opsPerThread) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long last = 0;
+                for (int i = 0; i < opsPerThread; i++) {
+                    last = (i & 3) == 0 ? clock.update(last + 2) : clock.tick();
+                }
+                if (last < 0)
+                    System.out.println(last);
+            });
+            workers[t].start();
+        }
+
+        long t0 = System.nanoTime();
+        start.countDown();
+        for (Thread w : workers) {
+            w.join();
+        }
+        return System.nanoTime() - t0;
+    }
+
+    /**
+     * Entry point.
+     *
+     * @param args optional threads, operations per thread and rounds
+     * @throws InterruptedException if interrupted while running
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int ops = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        long total = (long) threads * ops;
+
+        System.out.println("Threads=" + threads + " ops/thread=" + ops + " rounds=" + rounds);
+        for (int r = 0; r < rounds; r++) {
+            long monitor = run(new MonitorClock(), threads, ops);
+            long atomic = run(new AtomicClock(), threads, ops);
+            System.out.printf("round %d: monitor %.2f Mops/s, lock-free %.2f Mops/s (x%.2f)%n", r,
+                    total * 1e3 / monitor, total * 1e3 / atomic, (double) monitor / atomic);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package Benchmark;
+
+import Utils.SynchronizedQueue;
+
+import java.util.LinkedList;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Contention benchmark for {@link SynchronizedQueue}.
+ * <p>
+ * Several producer threads add elements concurrently while a single
+ * consumer takes them with the blocking {@code remove()}, which is the
+ * hand-off pattern used between Receiver, TrafficSorter, PassRoad,
+ * TrafficLight and Exit. The lock-free queue is compared against the
+ * previous monitor-based implementation ({@link MonitorQueue}).
+ * <p>
+ * Usage: {@code java Benchmark.QueueBenchmark [producers] [itemsPerProducer] [rounds]}
+ */
+public class QueueBenchmark {
+
+    /**
+     * Minimal queue operations shared by both implementations.
+     */
+    private interface BenchQueue {
+        void add(Integer e);
+
+        Integer remove();
+    }
+
+    /**
+     * The monitor-based queue that {@link SynchronizedQueue} replaced:
+     * a {@link LinkedList} guarded by one monitor, waking waiters with
+     * {@code notifyAll}.
+     */
+    private static final class MonitorQueue implements BenchQueue {
+        private final LinkedList<Integer> queue = new LinkedList<>();
+
+        @Override
+        public synchronized void add(Integer e) {
+            queue.add(e);
+            notifyAll();
+        }
+
+        @Override
+        public synchronized Integer remove() {
+            while (queue.isEmpty()) {
+                try {
+                    wait();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return queue.poll();
+        }
+    }
+
+    /**
+     * Adapter for the lock-free {@link SynchronizedQueue}.
+     */
+    private static final class LockFreeQueue implements BenchQueue {
+        private final SynchronizedQueue<Integer> queue = new SynchronizedQueue<>();
+
+        @Override
+        public void add(Integer e) {
+            queue.add(e);
+        }
+
+        @Override
+        public Integer remove() {
+            return queue.remove();
+        }
+    }
+
+    /**
+     * Run one measurement: {@code producers} threads add
+     * {@code itemsPerProducer} elements each while the calling thread
+     * consumes all of them.
+     *
+     * @param q                queue under test
+     * @param producers        number of producer threads
+     * @param itemsPerProducer elements added by each producer
+     * @return elapsed time in nanoseconds
+     * @throws InterruptedException if interrupted while waiting for producers
+     */
+    private static long run(BenchQueue q, int producers, int itemsPerProducer) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            threads[p] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < itemsPerProducer; i++) {
+                    q.add(i);
+                }
+            });
+            threads[p].start();
+        }
+
+        long total = (long) producers * itemsPerProducer;
+        long t0 = System.nanoTime();
+        start.countDown();
+        long sum = 0;
+        for (long i = 0; i < total; i++) {
+            sum += q.remove();
+        }
+        long elapsed = System.nanoTime() - t0;
+        for (Thread t : threads) {
+            t.join();
+        }
+        if (sum < 0)
+            System.out.println(sum);
+        return elapsed;
+    }
+
+    /**
+     * Entry point.
+     *
+     * @param args optional producers, items per producer and rounds
+     * @throws InterruptedException if interrupted while running
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int producers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int items = args.length > 1 ? Integer.parseInt(args[1]) : 500_000;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        long total = (long) producers * items;
+
+        System.out.println("Producers=" + producers + " items/producer=" + items + " rounds=" + rounds);
+        for (int r = 0; r < rounds; r++) {
+            long monitor = run(new MonitorQueue(), producers, items);
+            long lockFree = run(new LockFreeQueue(), producers, items);
+            System.out.printf("round %d: monitor %.2f Mops/s, lock-free %.2f Mops/s (x%.2f)%n", r,
+                    total * 1e3 / monitor, total * 1e3 / lockFree, (double) monitor / lockFree);
+        }
+    }
+}
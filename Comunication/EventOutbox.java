@@ -0,0 +1,87 @@
+package Comunication;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import Event.Event;
+import Node.NodeEnum;
+import Utils.SynchronizedQueue;
+
+/**
+ * Per-node thread sending events to the central EventHandler.
+ * <p>
+ * Threads that must not block on the network, such as a node's timer
+ * thread, post their events here instead of connecting to the event
+ * handler themselves. Each node gets one outbox, started on its first
+ * event; the outbox sends the events in the order they were posted, so
+ * events about one vehicle posted by the same node (its arrival at a
+ * signal, then its departure) reach the event handler in that order.
+ * <p>
+ * An event is serialized when it is posted, so later changes to the objects
+ * it carries (a vehicle moving on) do not reach the event handler; only the
+ * connection and the write happen on the outbox thread. The caller must
+ * post before handing the objects to another thread.
+ */
+final class EventOutbox extends Thread {
+    private static final Map<NodeEnum, EventOutbox> OUTBOXES = new ConcurrentHashMap<>();
+
+    private final SynchronizedQueue<byte[]> pending = new SynchronizedQueue<>();
+
+    /**
+     * Create the outbox of a node.
+     *
+     * @param node node whose events are sent
+     */
+    private EventOutbox(NodeEnum node) {
+        super(node + "-events");
+        setDaemon(true);
+    }
+
+    /**
+     * Serializes an event and queues it for the outbox of the node that
+     * produced it, starting the outbox if needed.
+     *
+     * @param event event to send
+     */
+    static void post(Event event) {
+        byte[] bytes;
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(512);
+            ObjectOutputStream out = new ObjectOutputStream(buffer);
+            out.writeObject(event);
+            out.close();
+            bytes = buffer.toByteArray();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        OUTBOXES.computeIfAbsent(event.getNode(), node -> {
+            EventOutbox outbox = new EventOutbox(node);
+            outbox.start();
+            return outbox;
+        }).pending.add(bytes);
+    }
+
+    /**
+     * Main loop: sends the queued events one by one, each on its own
+     * connection as {@link Sender#sendToEventHandler(Event)} does.
+     */
+    @Override
+    public void run() {
+        while (true) {
+            byte[] bytes = this.pending.remove();
+            try (Socket socket = new Socket("localhost", Sender.EVENT_HANDLER_PORT)) {
+                OutputStream out = socket.getOutputStream();
+                out.write(bytes);
+                out.flush();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
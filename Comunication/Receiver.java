@@ -2,22 +2,37 @@ package Comunication;
 
 import Event.*;
 import Node.NodeEnum;
+import Traffic.RoadEnum;
 import Utils.*;
 import Vehicle.*;
 import java.io.*;
 import java.net.*;
+import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Thread that receives vehicle events from other nodes using TCP socket and
  * places them into the local queue for processing. It also forwards arrival
  * events to the central {@link EventHandler}, updating the local logical clock
  * based on the received clock.
+ * <p>
+ * Snapshot markers received on the same socket are handed to the node's
+ * {@link SnapshotAgent}. A receiver created without a queue only accepts
+ * markers (used by entrance nodes, which have no incoming roads).
+ * A {@link DepartureBatch} is enqueued vehicle by vehicle, as if its
+ * vehicles had arrived one after the other.
+ * Control messages between nodes ({@link RouteAdvertisement},
+ * {@link QueueGossip}, {@link RoadCredit}) go to the node's control listener,
+ * if any.
  */
 public class Receiver extends Thread {
     private final SynchronizedQueue<Vehicle> queue;
     private final int port;
     private final NodeEnum node;
     private final LogicalClock clock;
+    private final SnapshotAgent snapshotAgent;
+    private final Runnable onArrival;
+    private final Consumer<Event> onControl;
 
     private volatile boolean running = true;
     private ServerSocket serverSocket;
@@ -25,15 +40,55 @@ public class Receiver extends Thread {
     /**
      * Constructor for Receiver.
      *
-     * @param queue local queue where received vehicles will be placed
-     * @param node  logical node associated with this receiver
-     * @param clock logical clock used to synchronize event timestamps
+     * @param queue         local queue where received vehicles will be placed
+     *                      ({@code null} for a marker-only receiver)
+     * @param node          logical node associated with this receiver
+     * @param clock         logical clock used to synchronize event timestamps
+     * @param snapshotAgent snapshot participant of the node
      */
-    public Receiver(SynchronizedQueue<Vehicle> queue, NodeEnum node, LogicalClock clock) {
+    public Receiver(SynchronizedQueue<Vehicle> queue, NodeEnum node, LogicalClock clock,
+            SnapshotAgent snapshotAgent) {
+        this(queue, node, clock, snapshotAgent, null);
+    }
+
+    /**
+     * Constructor for a Receiver that also notifies a listener after every
+     * vehicle added to the queue (used by crossroads driven by an event
+     * loop, whose loop thread consumes the queue).
+     *
+     * @param queue         local queue where received vehicles will be placed
+     * @param node          logical node associated with this receiver
+     * @param clock         logical clock used to synchronize event timestamps
+     * @param snapshotAgent snapshot participant of the node
+     * @param onArrival     listener run after each enqueue, or {@code null}
+     */
+    public Receiver(SynchronizedQueue<Vehicle> queue, NodeEnum node, LogicalClock clock,
+            SnapshotAgent snapshotAgent, Runnable onArrival) {
+        this(queue, node, clock, snapshotAgent, onArrival, null);
+    }
+
+    /**
+     * Constructor for a Receiver of a node that also exchanges control
+     * messages (dynamic routing, max-pressure signal control, road space)
+     * with its neighbours.
+     *
+     * @param queue         local queue where received vehicles will be placed
+     *                      ({@code null} for a marker-only receiver)
+     * @param node          logical node associated with this receiver
+     * @param clock         logical clock used to synchronize event timestamps
+     * @param snapshotAgent snapshot participant of the node
+     * @param onArrival     listener run after each enqueue, or {@code null}
+     * @param onControl     listener for control messages, or {@code null}
+     */
+    public Receiver(SynchronizedQueue<Vehicle> queue, NodeEnum node, LogicalClock clock,
+            SnapshotAgent snapshotAgent, Runnable onArrival, Consumer<Event> onControl) {
         this.queue = queue;
         this.node = node;
         this.port = node.getPort();
         this.clock = clock;
+        this.snapshotAgent = snapshotAgent;
+        this.onArrival = onArrival;
+        this.onControl = onControl;
     }
 
     /**
@@ -50,11 +105,12 @@ public class Receiver extends Thread {
         this.interrupt();
     }
 
-     /**
+    /**
      * Main loop: accepts connections on the configured port, reads incoming
      * vehicle events, forwards a corresponding arrival event to the
      * {@link EventHandler} (updating the logical clock), and enqueues the
-     * received vehicle into the local queue.
+     * received vehicle into the local queue. Snapshot markers are passed to
+     * the {@link SnapshotAgent}.
      */
     @Override
     public void run() {
@@ -63,14 +119,69 @@ public class Receiver extends Thread {
             while (running) {
                 Socket socket = serverSocket.accept();
                 ObjectInputStream in = new ObjectInputStream(socket.getInputStream());
-                VehicleEvent event = (VehicleEvent) in.readObject();
+                Event received = (Event) in.readObject();
+                if (received instanceof SnapshotMarker) {
+                    clock.update(received.getLogicalClock());
+                    snapshotAgent.onMarker((SnapshotMarker) received);
+                    continue;
+                }
+                if (received instanceof RouteAdvertisement || received instanceof QueueGossip
+                        || received instanceof RoadCredit) {
+                    clock.update(received.getLogicalClock());
+                    if (onControl != null)
+                        onControl.accept(received);
+                    continue;
+                }
+                if (queue == null)
+                    continue;
+                if (received instanceof DepartureBatch) {
+                    receiveBatch((DepartureBatch) received);
+                    continue;
+                }
+                VehicleEvent event = (VehicleEvent) received;
                 Sender.sendToEventHandler(new VehicleEvent(EventType.VEHICLE_ROAD_ARRIVAL, node,
                         clock.update(event.getLogicalClock()), event.getVehicle()));
-                queue.add(event.getVehicle());
+                snapshotAgent.beginTransfer();
+                try {
+                    snapshotAgent.recordInFlight(RoadEnum.between(event.getNode(), node));
+                    queue.add(event.getVehicle());
+                } finally {
+                    snapshotAgent.endTransfer();
+                }
+                if (onArrival != null)
+                    onArrival.run();
             }
         } catch (Exception e) {
 
         }
         stopReceiver();
     }
+
+    /**
+     * Enqueues the vehicles of a departure batch, in departure order, with
+     * one arrival event per vehicle. The whole platoon is added to the queue
+     * at once, in one snapshot transfer.
+     *
+     * @param batch received batch
+     */
+    private void receiveBatch(DepartureBatch batch) {
+        RoadEnum road = RoadEnum.between(batch.getNode(), node);
+        List<Vehicle> vehicles = batch.getVehicles();
+        clock.update(batch.getLogicalClock());
+        long time = clock.tickN(vehicles.size());
+        for (Vehicle vehicle : vehicles) {
+            Sender.sendToEventHandler(new VehicleEvent(EventType.VEHICLE_ROAD_ARRIVAL, node, time++, vehicle));
+        }
+        snapshotAgent.beginTransfer();
+        try {
+            for (int i = 0; i < vehicles.size(); i++) {
+                snapshotAgent.recordInFlight(road);
+            }
+            queue.addAll(vehicles);
+        } finally {
+            snapshotAgent.endTransfer();
+        }
+        if (onArrival != null)
+            onArrival.run();
+    }
 }
\ No newline at end of file
@@ -6,12 +6,14 @@ import Utils.LogicalClock;
 import Vehicle.Vehicle;
 import java.io.ObjectOutputStream;
 import java.net.Socket;
+import java.util.List;
 
 /**
  * Helper utility that sends serialized {@link Event} objects over TCP to
  * other components of the simulator.
  */
 public class Sender {
+    static final int EVENT_HANDLER_PORT = 8000;
 
     /**
      * Sends an event directly to the central EventHandler (port 8000).
@@ -20,7 +22,7 @@ public class Sender {
      */
     public static void sendToEventHandler(Event event) {
         try {
-            Socket socket = new Socket("localhost", 8000);
+            Socket socket = new Socket("localhost", EVENT_HANDLER_PORT);
             ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
             out.writeObject(event);
             out.flush();
@@ -31,6 +33,17 @@ public class Sender {
         }
     }
 
+    /**
+     * Queues an event for the central EventHandler and returns at once; the
+     * event is serialized now and sent by the outbox thread of the node that
+     * produced it. For callers that must not block on the network.
+     *
+     * @param event serializable event to send
+     */
+    public static void postToEventHandler(Event event) {
+        EventOutbox.post(event);
+    }
+
     /**
      * Sends an event to a specific node (destination port).
      *
@@ -50,6 +63,46 @@ public class Sender {
         }
     }
     
+    /**
+     * Sends a snapshot marker to a specific node.
+     *
+     * @param marker   marker to send
+     * @param destPort TCP port of the destination node
+     */
+    public static void sendSnapshotMarker(SnapshotMarker marker, int destPort) {
+        sendVehicle(marker, destPort);
+    }
+
+    /**
+     * Sends a route advertisement to a neighbouring node.
+     *
+     * @param advertisement advertisement to send
+     * @param destPort      TCP port of the destination node
+     */
+    public static void sendRouteAdvertisement(RouteAdvertisement advertisement, int destPort) {
+        sendVehicle(advertisement, destPort);
+    }
+
+    /**
+     * Sends a queue gossip message to a neighbouring node.
+     *
+     * @param gossip   message to send
+     * @param destPort TCP port of the destination node
+     */
+    public static void sendQueueGossip(QueueGossip gossip, int destPort) {
+        sendVehicle(gossip, destPort);
+    }
+
+    /**
+     * Sends freed road space back to the node upstream of a road.
+     *
+     * @param credit   message to send
+     * @param destPort TCP port of the destination node
+     */
+    public static void sendRoadCredit(RoadCredit credit, int destPort) {
+        sendVehicle(credit, destPort);
+    }
+
     /**
      * Sends a vehicle departure event: notifies both the central EventHandler
      * and the destination node about the vehicle departure.
@@ -64,4 +117,18 @@ public class Sender {
         sendToEventHandler(event);
         sendVehicle(event, destPort);
     }
+
+    /**
+     * Sends the vehicles that left a signal during one green interval to
+     * their next node in a single message. The EventHandler is notified of
+     * each departure separately, when it happens.
+     *
+     * @param vehicles vehicles that departed, in departure order
+     * @param destPort destination node port
+     * @param node     origin node
+     * @param clock    logical clock used to timestamp the batch
+     */
+    public static void sendDepartureBatch(List<Vehicle> vehicles, int destPort, NodeEnum node, LogicalClock clock) {
+        sendVehicle(new DepartureBatch(node, clock.tick(), vehicles), destPort);
+    }
 }
@@ -0,0 +1,181 @@
+package Comunication;
+
+import Event.*;
+import Node.NodeEnum;
+import Traffic.RoadEnum;
+import Utils.LogicalClock;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntSupplier;
+
+/**
+ * Per-node participant of a Chandy&ndash;Lamport distributed snapshot.
+ * <p>
+ * Components of a node register the queues they own with
+ * {@link #register(String, RoadEnum, IntSupplier)} and wrap every vehicle
+ * hand-off between queues (or to the network) in
+ * {@link #beginTransfer()}/{@link #endTransfer()}. Hand-offs share a read
+ * lock, so they never block each other; recording the local state takes the
+ * write lock only for the time needed to read the queue sizes and send the
+ * markers, so the simulation keeps running while the snapshot is collected.
+ * <p>
+ * When the first marker of a snapshot arrives the agent records its queues,
+ * sends a marker to every downstream node and starts counting the vehicles
+ * received on each incoming road. A road stops being counted when its
+ * marker arrives; once all incoming roads are closed the agent reports a
+ * {@link SnapshotEvent} to the central event handler.
+ */
+public class SnapshotAgent {
+    private final NodeEnum node;
+    private final LogicalClock clock;
+    private final List<RoadEnum> incomingRoads;
+    private final List<RoadEnum> outgoingRoads;
+    private final List<Probe> probes = new CopyOnWriteArrayList<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long snapshotId = -1L;
+    private boolean recording = false;
+    private final Set<RoadEnum> openChannels = new HashSet<>();
+    private final Map<String, Integer> queueCounts = new LinkedHashMap<>();
+    private final Map<RoadEnum, Integer> roadCounts = new HashMap<>();
+
+    /**
+     * Creates the snapshot agent of a node.
+     *
+     * @param node  node this agent belongs to
+     * @param clock logical clock of the node
+     */
+    public SnapshotAgent(NodeEnum node, LogicalClock clock) {
+        this.node = node;
+        this.clock = clock;
+        this.incomingRoads = RoadEnum.getRoadsToCrossroad(node);
+        this.outgoingRoads = RoadEnum.getRoadsFromCrossroad(node);
+    }
+
+    /**
+     * Registers a local queue whose size is part of the node state.
+     *
+     * @param label human-readable label of the queue
+     * @param road  road the queued vehicles belong to, or {@code null} if the
+     *              queue is not tied to a single road
+     * @param size  supplier of the current queue size
+     */
+    public void register(String label, RoadEnum road, IntSupplier size) {
+        probes.add(new Probe(label, road, size));
+    }
+
+    /**
+     * Marks the start of a vehicle hand-off. Must be paired with
+     * {@link #endTransfer()} in a {@code finally} block.
+     */
+    public void beginTransfer() {
+        lock.readLock().lock();
+    }
+
+    /**
+     * Marks the end of a vehicle hand-off.
+     */
+    public void endTransfer() {
+        lock.readLock().unlock();
+    }
+
+    /**
+     * Records a vehicle received on the given incoming road. Must be called
+     * inside a transfer, together with the enqueue of the vehicle.
+     *
+     * @param road road the vehicle arrived on
+     */
+    public synchronized void recordInFlight(RoadEnum road) {
+        if (recording && road != null && openChannels.contains(road)) {
+            queueCounts.merge(road + " in flight", 1, Integer::sum);
+            roadCounts.merge(road, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Handles a marker received by this node.
+     * <p>
+     * The first marker of a snapshot records the local state and forwards
+     * markers downstream. Every marker closes the incoming road it arrived
+     * on; when no road is left open the local result is reported.
+     *
+     * @param marker received marker
+     */
+    public void onMarker(SnapshotMarker marker) {
+        lock.writeLock().lock();
+        try {
+            synchronized (this) {
+                long id = marker.getSnapshotId();
+                if (id < snapshotId || (id == snapshotId && !recording))
+                    return;
+                if (id > snapshotId)
+                    recordLocalState(id);
+                if (marker.getNode() != null)
+                    openChannels.remove(RoadEnum.between(marker.getNode(), node));
+                if (openChannels.isEmpty())
+                    report();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Records the size of every registered queue and sends a marker on every
+     * outgoing road. Called with the write lock held, so no hand-off is in
+     * progress.
+     *
+     * @param id identifier of the new snapshot
+     */
+    private void recordLocalState(long id) {
+        snapshotId = id;
+        recording = true;
+        queueCounts.clear();
+        roadCounts.clear();
+        openChannels.clear();
+        openChannels.addAll(incomingRoads);
+
+        for (Probe p : probes) {
+            int n = p.size.getAsInt();
+            queueCounts.merge(p.label, n, Integer::sum);
+            if (p.road != null)
+                roadCounts.merge(p.road, n, Integer::sum);
+        }
+
+        for (RoadEnum road : outgoingRoads) {
+            Sender.sendSnapshotMarker(new SnapshotMarker(node, clock.tick(), id), road.getDestination().getPort());
+        }
+    }
+
+    /**
+     * Sends the local snapshot result to the event handler.
+     */
+    private void report() {
+        recording = false;
+        Sender.sendToEventHandler(new SnapshotEvent(node, clock.tick(), snapshotId, queueCounts, roadCounts));
+    }
+
+    /**
+     * Registered local queue.
+     */
+    private static final class Probe {
+        final String label;
+        final RoadEnum road;
+        final IntSupplier size;
+
+        /**
+         * Create a new probe.
+         *
+         * @param label queue label
+         * @param road  associated road or {@code null}
+         * @param size  size supplier
+         */
+        Probe(String label, RoadEnum road, IntSupplier size) {
+            this.label = label;
+            this.road = road;
+            this.size = size;
+        }
+    }
+}
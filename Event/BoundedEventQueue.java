@@ -0,0 +1,136 @@
+package Event;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Priority queue of {@link Event}s with a soft capacity limit.
+ * <p>
+ * The queue keeps the ordering of {@link PriorityBlockingQueue} but lets a
+ * producer wait for free space with {@link #awaitSpace()}. Every removal
+ * wakes producers waiting for space. Insertion methods themselves never
+ * block; callers that must honour the capacity check {@link #isFull()} or
+ * call {@link #awaitSpace()} first.
+ */
+public class BoundedEventQueue extends PriorityBlockingQueue<Event> {
+    private static final long serialVersionUID = 1L;
+
+    private final int capacity;
+    private final transient Object space = new Object();
+    private volatile int waitingProducers = 0;
+
+    /**
+     * Creates a bounded event queue.
+     *
+     * @param capacity   maximum number of queued events (must be &gt; 0)
+     * @param comparator ordering of the events
+     */
+    public BoundedEventQueue(int capacity, Comparator<? super Event> comparator) {
+        super(Math.min(capacity, 64), comparator);
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be > 0");
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the configured capacity.
+     *
+     * @return maximum number of queued events
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns whether the queue holds at least {@code capacity} events.
+     *
+     * @return true if the queue is full
+     */
+    public boolean isFull() {
+        return size() >= capacity;
+    }
+
+    /**
+     * Blocks until the queue has room for at least one more event.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void awaitSpace() throws InterruptedException {
+        synchronized (space) {
+            waitingProducers++;
+            try {
+                while (isFull()) {
+                    space.wait();
+                }
+            } finally {
+                waitingProducers--;
+            }
+        }
+    }
+
+    /**
+     * Wakes producers blocked in {@link #awaitSpace()}, if any.
+     */
+    private void signalSpace() {
+        if (waitingProducers > 0) {
+            synchronized (space) {
+                space.notifyAll();
+            }
+        }
+    }
+
+    @Override
+    public Event take() throws InterruptedException {
+        Event e = super.take();
+        signalSpace();
+        return e;
+    }
+
+    @Override
+    public Event poll() {
+        Event e = super.poll();
+        if (e != null)
+            signalSpace();
+        return e;
+    }
+
+    @Override
+    public Event poll(long timeout, TimeUnit unit) throws InterruptedException {
+        Event e = super.poll(timeout, unit);
+        if (e != null)
+            signalSpace();
+        return e;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        boolean removed = super.remove(o);
+        if (removed)
+            signalSpace();
+        return removed;
+    }
+
+    @Override
+    public int drainTo(Collection<? super Event> c) {
+        int n = super.drainTo(c);
+        if (n > 0)
+            signalSpace();
+        return n;
+    }
+
+    @Override
+    public int drainTo(Collection<? super Event> c, int maxElements) {
+        int n = super.drainTo(c, maxElements);
+        if (n > 0)
+            signalSpace();
+        return n;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        signalSpace();
+    }
+}
@@ -0,0 +1,48 @@
+package Event;
+
+import java.util.Collections;
+import java.util.List;
+
+import Node.NodeEnum;
+import Vehicle.Vehicle;
+
+/**
+ * Platoon of vehicles that left a signal for the same downstream node within
+ * a short window of one green interval.
+ * <p>
+ * A traffic light collects the vehicles it discharges during a green and
+ * sends them in one message per next node and platoon window, instead of
+ * one connection per vehicle; the receiver enqueues the platoon at once. Each vehicle carries its own departure time, so the
+ * receiver schedules the road traversal from when the vehicle actually left
+ * the junction rather than from when the batch arrived.
+ */
+public class DepartureBatch extends Event {
+    private static final long serialVersionUID = 1L;
+    private final List<Vehicle> vehicles;
+
+    /**
+     * Creates a departure batch.
+     *
+     * @param node     node the vehicles departed from
+     * @param time     logical clock timestamp
+     * @param vehicles departed vehicles, in departure order
+     */
+    public DepartureBatch(NodeEnum node, long time, List<Vehicle> vehicles) {
+        super(EventType.DEPARTURE_BATCH, node, time);
+        this.vehicles = vehicles;
+    }
+
+    /**
+     * Returns the departed vehicles.
+     *
+     * @return unmodifiable list of vehicles, in departure order
+     */
+    public List<Vehicle> getVehicles() {
+        return Collections.unmodifiableList(vehicles);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("DepartureBatch[%s, vehicles=%d]", super.toString(), vehicles.size());
+    }
+}
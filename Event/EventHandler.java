@@ -2,35 +2,134 @@ package Event;
 
 import java.io.*;
 import java.net.*;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * Central TCP server that receives serialized {@link Event} objects from
  * simulator components and enqueues them into a priority queue.
  * <p>
- * Events received on port {@link #PORT} are placed in the
- * {@code PriorityBlockingQueue<Event>} for consumption by the UI or other
+ * Events received on port {@link #PORT} are placed in a
+ * {@link BoundedEventQueue} for consumption by the UI or other
  * components. This thread is intended to run as a single central service
  * within the simulation host.
+ * <p>
+ * When the queue is full the configured {@link OverloadPolicy} decides
+ * whether the handler waits for space (blocking the sender) or sheds
+ * animation-only events. The capacity, policy and sampling rate can be set
+ * with the {@code eventhandler.capacity}, {@code eventhandler.policy} and
+ * {@code eventhandler.sampleEvery} system properties. Shed events are
+ * counted per {@link EventType}.
  */
 
 public class EventHandler extends Thread {
     public static final int PORT = 8000;
-    private PriorityBlockingQueue<Event> eventQueue;
+    public static final int CAPACITY = positiveIntProperty("eventhandler.capacity", 10_000);
+    private static final OverloadPolicy POLICY = overloadPolicy();
+    private static final int SAMPLE_EVERY = positiveIntProperty("eventhandler.sampleEvery", 4);
+
+    private BoundedEventQueue eventQueue;
     private volatile boolean running = true;
+    private final AtomicLongArray shedByType = new AtomicLongArray(EventType.values().length);
+    private long sampleCounter = 0;
+
+    /**
+     * Returns a positive integer system property. A value that is not an
+     * integer is reported and replaced by the default; values below 1 are
+     * raised to 1.
+     *
+     * @param name         property name
+     * @param defaultValue value used when the property is unset or invalid
+     * @return the value, at least 1
+     */
+    private static int positiveIntProperty(String name, int defaultValue) {
+        String v = System.getProperty(name);
+        if (v == null || v.isEmpty())
+            return defaultValue;
+        try {
+            return Math.max(1, Integer.parseInt(v.trim()));
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid " + name + " '" + v + "', using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Returns the overload policy: the {@code eventhandler.policy} system
+     * property if set and valid, otherwise
+     * {@link OverloadPolicy#SHED_ANIMATION}. An unknown policy is reported.
+     *
+     * @return the overload policy
+     */
+    private static OverloadPolicy overloadPolicy() {
+        String v = System.getProperty("eventhandler.policy");
+        if (v == null || v.isEmpty())
+            return OverloadPolicy.SHED_ANIMATION;
+        OverloadPolicy policy = OverloadPolicy.toOverloadPolicy(v.trim());
+        if (policy == null) {
+            System.err.println("Invalid eventhandler.policy '" + v + "', using " + OverloadPolicy.SHED_ANIMATION);
+            return OverloadPolicy.SHED_ANIMATION;
+        }
+        return policy;
+    }
 
     /**
      * Creates an event handler that listens on the defined port and inserts
      * received events into the priority queue.
      *
-     * @param eventQueue event queue (PriorityBlockingQueue)
+     * @param eventQueue bounded event queue
      * @param running    initial running state of the handler
      */
-    public EventHandler(PriorityBlockingQueue<Event> eventQueue, boolean running) {
+    public EventHandler(BoundedEventQueue eventQueue, boolean running) {
         this.running = running;
         this.eventQueue = eventQueue;
     }
 
+    /**
+     * Returns the number of events of the given type that were shed because
+     * the queue was full.
+     *
+     * @param type event type
+     * @return number of shed events of that type
+     */
+    public long getShedCount(EventType type) {
+        return shedByType.get(type.ordinal());
+    }
+
+    /**
+     * Returns the total number of events shed because the queue was full.
+     *
+     * @return number of shed events across all types
+     */
+    public long getTotalShedCount() {
+        long sum = 0L;
+        for (int i = 0; i < shedByType.length(); i++) {
+            sum += shedByType.get(i);
+        }
+        return sum;
+    }
+
+    /**
+     * Inserts a received event into the queue applying the overload policy.
+     * <p>
+     * Events are queued immediately while there is room. Once the queue is
+     * full, sheddable events are dropped (or sampled) according to the policy
+     * and every other event waits for space.
+     *
+     * @param event the received event
+     * @throws InterruptedException if interrupted while waiting for space
+     */
+    private void admit(Event event) throws InterruptedException {
+        if (eventQueue.isFull() && event.getType().isSheddable()) {
+            if (POLICY == OverloadPolicy.SHED_ANIMATION
+                    || (POLICY == OverloadPolicy.SAMPLE && sampleCounter++ % SAMPLE_EVERY != 0)) {
+                shedByType.incrementAndGet(event.getType().ordinal());
+                return;
+            }
+        }
+        eventQueue.awaitSpace();
+        eventQueue.put(event);
+    }
+
     /**
      * Stops the handler (causes the main loop to exit).
      */
@@ -41,7 +140,7 @@ public class EventHandler extends Thread {
     /**
      * Main thread loop: accepts connections on {@link #PORT}, reads an
      * {@link Event} object from the socket stream and inserts it into the
-     * event queue.
+     * event queue (see {@link #admit(Event)}).
      * <p>
      * The method blocks on {@code serverSocket.accept()} and will continue
      * until {@link #stopHandler()} is called which flips the {@code running}
@@ -57,9 +156,12 @@ public class EventHandler extends Thread {
                     Socket socket = serverSocket.accept();
                     ObjectInputStream in = new ObjectInputStream(socket.getInputStream());
                     Event event = (Event) in.readObject();
-                    eventQueue.put(event);
+                    admit(event);
                     in.close();
                     socket.close();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
                 } catch (Exception e) {
                     e.printStackTrace();
                 }
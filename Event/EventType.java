@@ -9,5 +9,24 @@ public enum EventType {
     VEHICLE_SIGNAL_ARRIVAL,
     VEHICLE_ROAD_ARRIVAL,
     VEHICLE_DEPARTURE,
-    VEHICLE_EXIT
+    VEHICLE_EXIT,
+    SNAPSHOT_MARKER,
+    SNAPSHOT_STATE,
+    ROUTE_ADVERTISEMENT,
+    QUEUE_GOSSIP,
+    DEPARTURE_BATCH,
+    ROAD_CREDIT,
+    ROAD_OCCUPANCY;
+
+    /**
+     * Returns whether events of this type only drive the dashboard animation
+     * and may therefore be shed when the event handler is overloaded.
+     * Statistics-relevant events (creation, signal arrival, departure, exit)
+     * and signal changes are never sheddable.
+     *
+     * @return true if the event may be dropped under overload
+     */
+    public boolean isSheddable() {
+        return this == VEHICLE_ROAD_ARRIVAL;
+    }
 }
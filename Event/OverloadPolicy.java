@@ -0,0 +1,40 @@
+package Event;
+
+/**
+ * Policies applied by the {@link EventHandler} when its bounded ingestion
+ * queue is full.
+ * <p>
+ * Whatever the policy, events whose type is not
+ * {@link EventType#isSheddable() sheddable} are never dropped: the handler
+ * waits for space instead, which in turn blocks the sending component.
+ */
+public enum OverloadPolicy {
+    /**
+     * Every event waits for space in the queue (the sender blocks).
+     */
+    BLOCK,
+    /**
+     * Sheddable (animation-only) events are dropped while the queue is full.
+     */
+    SHED_ANIMATION,
+    /**
+     * While the queue is full only one in every N sheddable events is kept;
+     * the others are dropped.
+     */
+    SAMPLE;
+
+    /**
+     * Converts a string to the corresponding policy, ignoring case.
+     *
+     * @param policyString policy name (for example "block" or "SAMPLE")
+     * @return the matching {@link OverloadPolicy} or {@code null} if not found
+     */
+    public static OverloadPolicy toOverloadPolicy(String policyString) {
+        for (OverloadPolicy policy : values()) {
+            if (policy.name().equalsIgnoreCase(policyString)) {
+                return policy;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,43 @@
+package Event;
+
+import Node.NodeEnum;
+
+/**
+ * Queue-length message of the max-pressure signal control.
+ * <p>
+ * A crossroad sends it to the crossroad upstream of one of its incoming
+ * roads, with the number of vehicles currently on that road and waiting at
+ * its signal. The upstream crossroad uses it as the downstream queue of its
+ * outgoing road.
+ */
+public class QueueGossip extends Event {
+    private static final long serialVersionUID = 1L;
+    private final int queued;
+
+    /**
+     * Creates a queue gossip message.
+     *
+     * @param node   sending crossroad
+     * @param time   logical clock timestamp
+     * @param queued vehicles queued on the road from the receiver to the
+     *               sender
+     */
+    public QueueGossip(NodeEnum node, long time, int queued) {
+        super(EventType.QUEUE_GOSSIP, node, time);
+        this.queued = queued;
+    }
+
+    /**
+     * Returns the reported queue length.
+     *
+     * @return number of vehicles
+     */
+    public int getQueued() {
+        return queued;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("QueueGossip[%s, queued=%d]", super.toString(), queued);
+    }
+}
@@ -0,0 +1,41 @@
+package Event;
+
+import Node.NodeEnum;
+
+/**
+ * Road space handed back to the node upstream of a road.
+ * <p>
+ * The node at the end of a road sends it when vehicles leave the road
+ * through its signal, so that the upstream node may send that much road
+ * space worth of vehicles onto the road again.
+ */
+public class RoadCredit extends Event {
+    private static final long serialVersionUID = 1L;
+    private final int units;
+
+    /**
+     * Creates a road credit message.
+     *
+     * @param node  node at the end of the road
+     * @param time  logical clock timestamp
+     * @param units road space freed, in half car lengths
+     */
+    public RoadCredit(NodeEnum node, long time, int units) {
+        super(EventType.ROAD_CREDIT, node, time);
+        this.units = units;
+    }
+
+    /**
+     * Returns the road space freed.
+     *
+     * @return space in half car lengths
+     */
+    public int getUnits() {
+        return units;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RoadCredit[%s, units=%d]", super.toString(), units);
+    }
+}
@@ -0,0 +1,44 @@
+package Event;
+
+import Node.NodeEnum;
+import Traffic.RoadEnum;
+
+import java.util.*;
+
+/**
+ * Periodic report of the road space in use on the roads leaving a node,
+ * sent to the central event handler.
+ * <p>
+ * The space in use on a road counts the vehicles sent onto it that have not
+ * yet left it through the signal at its end.
+ */
+public class RoadOccupancyEvent extends Event {
+    private static final long serialVersionUID = 1L;
+    private final Map<RoadEnum, Integer> occupied;
+
+    /**
+     * Creates an occupancy report.
+     *
+     * @param node     reporting node
+     * @param time     logical clock timestamp
+     * @param occupied space in use per road, in half car lengths
+     */
+    public RoadOccupancyEvent(NodeEnum node, long time, Map<RoadEnum, Integer> occupied) {
+        super(EventType.ROAD_OCCUPANCY, node, time);
+        this.occupied = new HashMap<>(occupied);
+    }
+
+    /**
+     * Returns the space in use per road.
+     *
+     * @return unmodifiable map of road to space in half car lengths
+     */
+    public Map<RoadEnum, Integer> getOccupied() {
+        return Collections.unmodifiableMap(occupied);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RoadOccupancyEvent[%s, roads=%d]", super.toString(), occupied.size());
+    }
+}
@@ -0,0 +1,43 @@
+package Event;
+
+import Node.NodeEnum;
+
+/**
+ * Distance-vector message of the dynamic routing.
+ * <p>
+ * A crossroad sends it to the crossroad upstream of one of its incoming
+ * roads. It carries, for every exit, the estimated time from the start of
+ * that road to the exit: the road's travel time, the current wait at its
+ * signal and the best remaining time from the sender onwards.
+ */
+public class RouteAdvertisement extends Event {
+    private static final long serialVersionUID = 1L;
+    private final long[] costs;
+
+    /**
+     * Creates a route advertisement.
+     *
+     * @param node  sending crossroad
+     * @param time  logical clock timestamp
+     * @param costs estimated cost in ms per exit, indexed by exit position
+     *              in the topology ({@link Long#MAX_VALUE} if unreachable)
+     */
+    public RouteAdvertisement(NodeEnum node, long time, long[] costs) {
+        super(EventType.ROUTE_ADVERTISEMENT, node, time);
+        this.costs = costs.clone();
+    }
+
+    /**
+     * Returns the advertised cost per exit.
+     *
+     * @return costs in ms, indexed by exit position in the topology
+     */
+    public long[] getCosts() {
+        return costs.clone();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RouteAdvertisement[%s, exits=%d]", super.toString(), costs.length);
+    }
+}
@@ -0,0 +1,72 @@
+package Event;
+
+import Node.NodeEnum;
+import Traffic.RoadEnum;
+
+import java.util.*;
+
+/**
+ * Local result of a distributed snapshot, reported by one node to the
+ * central event handler.
+ * <p>
+ * It holds the number of vehicles recorded in each local queue, including
+ * one "in flight" entry per incoming road for the vehicles that were still
+ * on the link when the snapshot was taken, and the number of vehicles per
+ * road.
+ */
+public class SnapshotEvent extends Event {
+    private static final long serialVersionUID = 1L;
+    private final long snapshotId;
+    private final Map<String, Integer> queueCounts;
+    private final Map<RoadEnum, Integer> roadCounts;
+
+    /**
+     * Creates a snapshot report.
+     *
+     * @param node        reporting node
+     * @param time        logical clock timestamp
+     * @param snapshotId  identifier of the snapshot
+     * @param queueCounts vehicles recorded per local queue (by label)
+     * @param roadCounts  vehicles recorded per road, including in-flight ones
+     */
+    public SnapshotEvent(NodeEnum node, long time, long snapshotId, Map<String, Integer> queueCounts,
+            Map<RoadEnum, Integer> roadCounts) {
+        super(EventType.SNAPSHOT_STATE, node, time);
+        this.snapshotId = snapshotId;
+        this.queueCounts = new LinkedHashMap<>(queueCounts);
+        this.roadCounts = new HashMap<>(roadCounts);
+    }
+
+    /**
+     * Returns the identifier of the snapshot.
+     *
+     * @return snapshot identifier
+     */
+    public long getSnapshotId() {
+        return snapshotId;
+    }
+
+    /**
+     * Returns the vehicles recorded per local queue.
+     *
+     * @return unmodifiable map of queue label to vehicle count
+     */
+    public Map<String, Integer> getQueueCounts() {
+        return Collections.unmodifiableMap(queueCounts);
+    }
+
+    /**
+     * Returns the vehicles recorded per road, including those in flight.
+     *
+     * @return unmodifiable map of road to vehicle count
+     */
+    public Map<RoadEnum, Integer> getRoadCounts() {
+        return Collections.unmodifiableMap(roadCounts);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SnapshotEvent[%s, snapshotId=%d, queues=%s]", super.toString(), snapshotId,
+                queueCounts);
+    }
+}
@@ -0,0 +1,43 @@
+package Event;
+
+import Node.NodeEnum;
+
+/**
+ * Marker message of the Chandy&ndash;Lamport snapshot algorithm.
+ * <p>
+ * Markers travel over the same links as vehicles. The node carried by the
+ * event is the sender of the marker, so the receiver can tell on which
+ * incoming road the marker arrived. A marker sent by the dashboard to start
+ * a snapshot carries no node.
+ */
+public class SnapshotMarker extends Event {
+    private static final long serialVersionUID = 1L;
+    private final long snapshotId;
+
+    /**
+     * Creates a snapshot marker.
+     *
+     * @param node       node that sends the marker ({@code null} for the
+     *                   initiator)
+     * @param time       logical clock timestamp
+     * @param snapshotId identifier of the snapshot being taken
+     */
+    public SnapshotMarker(NodeEnum node, long time, long snapshotId) {
+        super(EventType.SNAPSHOT_MARKER, node, time);
+        this.snapshotId = snapshotId;
+    }
+
+    /**
+     * Returns the identifier of the snapshot this marker belongs to.
+     *
+     * @return snapshot identifier
+     */
+    public long getSnapshotId() {
+        return snapshotId;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SnapshotMarker[%s, snapshotId=%d]", super.toString(), snapshotId);
+    }
+}
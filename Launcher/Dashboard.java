@@ -38,6 +38,7 @@ public class Dashboard extends JFrame {
     private JLabel statsCreatedLabel;
     private JLabel statsExitedLabel;
     private JLabel statsAvgTripLabel;
+    private JLabel statsShedLabel;
     private JLabel statsCreatedByTypeLabel;
     private JLabel statsActiveByTypeLabel;
     private JLabel statsExitedByTypeLabel;
@@ -48,6 +49,7 @@ public class Dashboard extends JFrame {
     private MapRenderer renderer;
     private JButton startBtn;
     private JButton stopBtn;
+    private JButton snapshotBtn;
 
     /**
      * Create and initialize the dashboard window.
@@ -77,7 +79,7 @@ public class Dashboard extends JFrame {
     /**
      * Build and attach the top control panel.
      * <p>
-     * The top panel contains the primary control buttons (Start/Stop)
+     * The top panel contains the primary control buttons (Start/Stop/Snapshot)
      * on the left and a status label on the right. Buttons are created
      * using {@link UiUtils} helper methods so they follow a consistent
      * application style.
@@ -89,11 +91,13 @@ public class Dashboard extends JFrame {
 
         startBtn = UiUtils.makeButton("Start");
         stopBtn = UiUtils.makeButton("Stop");
+        snapshotBtn = UiUtils.makeButton("Snapshot");
 
         JPanel controls = new JPanel();
         controls.setOpaque(false);
         controls.add(startBtn);
         controls.add(stopBtn);
+        controls.add(snapshotBtn);
 
         top.add(controls, BorderLayout.WEST);
 
@@ -157,10 +161,12 @@ public class Dashboard extends JFrame {
         statsActiveLabel = new JLabel("Active: 0");
         statsExitedLabel = new JLabel("Exited: 0");
         statsAvgTripLabel = new JLabel("Avg trip (s): 0.00");
+        statsShedLabel = new JLabel("Shed events: 0");
         UiUtils.addLabelWithGap(overallStatsPanel, statsCreatedLabel, 4);
         UiUtils.addLabelWithGap(overallStatsPanel, statsActiveLabel, 4);
         UiUtils.addLabelWithGap(overallStatsPanel, statsExitedLabel, 4);
-        overallStatsPanel.add(statsAvgTripLabel);
+        UiUtils.addLabelWithGap(overallStatsPanel, statsAvgTripLabel, 4);
+        overallStatsPanel.add(statsShedLabel);
         overallStatsPanel.setMaximumSize(new Dimension(180, 200));
         statsContainerPanel.add(overallStatsPanel);
         statsContainerPanel.add(Box.createHorizontalStrut(10));
@@ -229,14 +235,16 @@ public class Dashboard extends JFrame {
     }
 
     /**
-     * Attach action listeners to Start/Stop buttons.
+     * Attach action listeners to Start/Stop/Snapshot buttons.
      * <p>
      * The listeners call into the controller to start or request a
-     * graceful stop of the simulation.
+     * graceful stop of the simulation, or to take a snapshot of the
+     * vehicles currently in the network.
      */
     private void attachControlListeners() {
         this.startBtn.addActionListener(e -> this.controller.startSimulation());
         this.stopBtn.addActionListener(e -> this.controller.requestGracefulStop());
+        this.snapshotBtn.addActionListener(e -> this.controller.requestSnapshot());
     }
 
     /**
@@ -310,6 +318,7 @@ public class Dashboard extends JFrame {
         statsCreatedLabel.setText("Created: " + stats.getTotalCreated());
         statsExitedLabel.setText("Exited: " + stats.getTotalExited());
         statsAvgTripLabel.setText(String.format("Avg trip (s): %.2f", stats.getOverallTripStatsMillis()[1] / 1000.0));
+        statsShedLabel.setText("Shed events: " + (controller == null ? 0L : controller.getShedEventCount()));
 
         UiUtils.setLabelText(statsCreatedByTypeLabel,
                 "Created by type: " + UiUtils.joinCounts(stats.getCreatedByType()));
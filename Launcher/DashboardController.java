@@ -1,5 +1,6 @@
 package Launcher;
 
+import Comunication.Sender;
 import Event.Event;
 import Event.*;
 import Node.NodeEnum;
@@ -12,6 +13,7 @@ import java.util.*;
 import java.util.List;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.logging.*;
 
@@ -24,12 +26,22 @@ import java.util.logging.*;
  * simulator {@link Event}s from a blocking queue, updates the
  * {@link Statistics} object and the sprite map, and invokes UI callbacks
  * (logging, status and stats updates) on the Swing EDT where appropriate.
+ * <p>
+ * Events are consumed by a dispatcher that partitions them across a set of
+ * worker threads: vehicle events are hashed by vehicle id so every event of
+ * one vehicle is handled in order by the same worker, while
+ * {@link SignalChangeEvent}s go to a dedicated partition. The number of
+ * vehicle workers can be set with the {@code dashboard.workers} system
+ * property.
  */
 public class DashboardController {
     private static final Logger LOGGER = Logger.getLogger(DashboardController.class.getName());
 
     private static final long PASS_DELAY_MS = 200L;
     private static final int AUTO_STOP_MS = 60_000;
+    private static final int PARTITION_CAPACITY = 1024;
+    private static final int SIGNAL_PARTITION = 0;
+    private static final int EVENT_WORKERS = eventWorkers();
 
     private final MapModel model;
     private final Map<String, VehicleSprite> sprites;
@@ -47,18 +59,40 @@ public class DashboardController {
         return t;
     });
 
-    private volatile Future<?> eventConsumerFuture;
+    private final List<BlockingQueue<Event>> partitions = new ArrayList<>();
+    private final List<Future<?>> eventConsumerFutures = new ArrayList<>();
+    private final AtomicInteger pendingEvents = new AtomicInteger();
+    private volatile long lastShedEventCount = 0L;
+    private final Map<Long, List<SnapshotEvent>> snapshotReports = new ConcurrentHashMap<>();
     private javax.swing.Timer autoStopTimer;
     private final AtomicBoolean gracefulStopping = new AtomicBoolean(false);
 
-    private final Map<RoadEnum, Deque<AbstractMap.SimpleEntry<Long, String>>> passingSchedule = new EnumMap<>(
-            RoadEnum.class);
+    private final Map<RoadEnum, Deque<AbstractMap.SimpleEntry<Long, String>>> passingSchedule = new TreeMap<>();
 
     private final Consumer<String> logCb;
     private final Runnable updateStatsCb;
     private final Consumer<String> statusTextCb;
     private final Consumer<Color> statusColorCb;
 
+    /**
+     * Returns the number of vehicle event workers: the
+     * {@code dashboard.workers} system property if set and valid, otherwise
+     * one less than the available processors (at least 2).
+     *
+     * @return number of workers, at least 1
+     */
+    private static int eventWorkers() {
+        int workers = Math.max(2, Runtime.getRuntime().availableProcessors() - 1);
+        try {
+            String v = System.getProperty("dashboard.workers");
+            if (v != null && !v.isEmpty()) {
+                workers = Math.max(1, Integer.parseInt(v));
+            }
+        } catch (Exception ignored) {
+        }
+        return workers;
+    }
+
     /**
      * Create a new DashboardController.
      *
@@ -86,6 +120,10 @@ public class DashboardController {
         for (RoadEnum r : RoadEnum.values()) {
             this.passingSchedule.put(r, new ArrayDeque<>());
         }
+
+        for (int i = 0; i <= EVENT_WORKERS; i++) {
+            this.partitions.add(new LinkedBlockingQueue<>(PARTITION_CAPACITY));
+        }
     }
 
     /**
@@ -98,6 +136,19 @@ public class DashboardController {
         return this.stats;
     }
 
+    /**
+     * Return the number of events shed by the simulator's event handler
+     * because its queue was full. After a stop the last known value is kept.
+     *
+     * @return total shed events
+     */
+    public long getShedEventCount() {
+        Simulator sim = this.simulator;
+        if (sim != null)
+            this.lastShedEventCount = sim.getShedEventCount();
+        return this.lastShedEventCount;
+    }
+
     /**
      * Start the simulator and the background event consumer.
      */
@@ -112,6 +163,7 @@ public class DashboardController {
 
         this.simulator = new Simulator();
         this.eventQueue = this.simulator.getEventQueue();
+        this.lastShedEventCount = 0L;
 
         executor.execute(() -> {
             try {
@@ -136,6 +188,7 @@ public class DashboardController {
      */
     public synchronized void stopSimulation() {
         if (this.simulator != null) {
+            getShedEventCount();
             try {
                 this.simulator.stopSimulation();
             } catch (Exception ex) {
@@ -196,7 +249,8 @@ public class DashboardController {
                     synchronized (this.sprites) {
                         spritesEmpty = this.sprites.isEmpty();
                     }
-                    boolean queueEmpty = (this.eventQueue == null) || this.eventQueue.isEmpty();
+                    boolean queueEmpty = ((this.eventQueue == null) || this.eventQueue.isEmpty())
+                            && this.pendingEvents.get() == 0;
                     if (spritesEmpty && queueEmpty) {
                         break;
                     }
@@ -217,7 +271,34 @@ public class DashboardController {
     }
 
     /**
-     * Start a background task that consumes events from the simulator queue.
+     * Start a distributed snapshot of the vehicles in the network.
+     * <p>
+     * A snapshot marker is sent to every node; each node records its queues,
+     * forwards markers downstream and reports its part of the snapshot as a
+     * {@link SnapshotEvent}. The combined result is logged once all nodes
+     * have reported (see {@link #handleSnapshotReport(SnapshotEvent)}).
+     */
+    public void requestSnapshot() {
+        if (this.simulator == null || !this.simulator.isRunning()) {
+            logCb.accept("Simulator is not running");
+            return;
+        }
+        long id = System.currentTimeMillis();
+        this.executor.execute(() -> {
+            for (NodeEnum node : NodeEnum.values()) {
+                Sender.sendSnapshotMarker(new SnapshotMarker(null, 0L, id), node.getPort());
+            }
+        });
+        logCb.accept("Snapshot " + id + " requested");
+    }
+
+    /**
+     * Start the background event consumers.
+     * <p>
+     * A dispatcher task takes events from the simulator queue in logical
+     * clock order and hands each one to its partition (see
+     * {@link #partitionOf(Event)}). One worker task per partition then
+     * handles the events of that partition sequentially.
      */
     private void startEventConsumer() {
         stopEventConsumer();
@@ -227,32 +308,73 @@ public class DashboardController {
             return;
         }
 
-        Callable<Void> consumerTask = () -> {
+        Callable<Void> dispatcherTask = () -> {
             try {
                 while (this.simulator != null && this.simulator.isRunning()) {
                     Event ev = this.eventQueue.take();
-                    handleEvent(ev);
+                    this.pendingEvents.incrementAndGet();
+                    this.partitions.get(partitionOf(ev)).put(ev);
                 }
             } catch (InterruptedException ie) {
                 Thread.currentThread().interrupt();
             } catch (Exception ex) {
-                LOGGER.log(Level.SEVERE, "Event consumer crashed", ex);
-                logCb.accept("Event consumer crashed: " + ex.getMessage());
+                LOGGER.log(Level.SEVERE, "Event dispatcher crashed", ex);
+                logCb.accept("Event dispatcher crashed: " + ex.getMessage());
             }
             return null;
         };
+        this.eventConsumerFutures.add(executor.submit(dispatcherTask));
+
+        for (BlockingQueue<Event> partition : this.partitions) {
+            Callable<Void> workerTask = () -> {
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        Event ev = partition.take();
+                        try {
+                            handleEvent(ev);
+                        } catch (Exception ex) {
+                            LOGGER.log(Level.WARNING, "Failed to handle event " + ev, ex);
+                        } finally {
+                            this.pendingEvents.decrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            };
+            this.eventConsumerFutures.add(executor.submit(workerTask));
+        }
+    }
 
-        this.eventConsumerFuture = executor.submit(consumerTask);
+    /**
+     * Compute the partition that must handle the given event.
+     * <p>
+     * Signal changes (and any other non-vehicle event) go to the dedicated
+     * signal partition; vehicle events are hashed by vehicle id so all the
+     * events of one vehicle keep their relative order.
+     *
+     * @param ev the event to route
+     * @return index into {@code partitions}
+     */
+    private int partitionOf(Event ev) {
+        if (!(ev instanceof VehicleEvent))
+            return SIGNAL_PARTITION;
+        Vehicle v = ((VehicleEvent) ev).getVehicle();
+        if (v == null || v.getId() == null)
+            return SIGNAL_PARTITION;
+        return 1 + Math.floorMod(v.getId().hashCode(), EVENT_WORKERS);
     }
 
     /**
-     * Stop and cancel the background event consumer task if running.
+     * Stop and cancel the dispatcher and worker tasks if running.
      */
     private void stopEventConsumer() {
-        if (this.eventConsumerFuture != null && !this.eventConsumerFuture.isDone()) {
-            this.eventConsumerFuture.cancel(true);
-            this.eventConsumerFuture = null;
+        for (Future<?> f : this.eventConsumerFutures) {
+            if (!f.isDone())
+                f.cancel(true);
         }
+        this.eventConsumerFutures.clear();
     }
 
     /**
@@ -273,12 +395,17 @@ public class DashboardController {
     }
 
     /**
-     * Drain and discard all pending events from the simulator event queue.
+     * Drain and discard all pending events from the simulator event queue
+     * and from the worker partitions.
      */
     private void clearEventQueue() {
+        List<Event> drained = new ArrayList<>();
+        for (BlockingQueue<Event> partition : this.partitions) {
+            partition.drainTo(drained);
+        }
+        this.pendingEvents.set(0);
         if (this.eventQueue == null)
             return;
-        List<Event> drained = new ArrayList<>();
         this.eventQueue.drainTo(drained);
     }
 
@@ -298,11 +425,21 @@ public class DashboardController {
             handleSignalChange((SignalChangeEvent) ev);
             return;
         }
+        if (ev instanceof SnapshotEvent) {
+            handleSnapshotReport((SnapshotEvent) ev);
+            return;
+        }
+        if (ev instanceof RoadOccupancyEvent) {
+            this.stats.recordOccupancy((RoadOccupancyEvent) ev);
+            return;
+        }
 
         VehicleEvent ve = (VehicleEvent) ev;
         Vehicle v = ve.getVehicle();
 
         EventType type = ve.getType();
+        // Statistics first, so the views refreshed below see this event.
+        this.stats.record(ve);
 
         switch (type) {
             case NEW_VEHICLE:
@@ -340,7 +477,49 @@ public class DashboardController {
     }
 
     /**
-     * Create a new sprite for an entering vehicle and record entrance stats.
+     * Collect one node's part of a snapshot and, once every node has
+     * reported, log the number of vehicles per road and per queue.
+     *
+     * @param s the snapshot report
+     */
+    private void handleSnapshotReport(SnapshotEvent s) {
+        List<SnapshotEvent> reports = this.snapshotReports.computeIfAbsent(s.getSnapshotId(),
+                id -> Collections.synchronizedList(new ArrayList<>()));
+        reports.add(s);
+        if (reports.size() < NodeEnum.values().length)
+            return;
+        this.snapshotReports.remove(s.getSnapshotId());
+
+        int total = 0;
+        Map<RoadEnum, Integer> perRoad = new TreeMap<>();
+        Map<String, Integer> perQueue = new TreeMap<>();
+        synchronized (reports) {
+            for (SnapshotEvent r : reports) {
+                for (Map.Entry<String, Integer> e : r.getQueueCounts().entrySet()) {
+                    total += e.getValue();
+                    perQueue.merge(e.getKey(), e.getValue(), Integer::sum);
+                }
+                for (Map.Entry<RoadEnum, Integer> e : r.getRoadCounts().entrySet()) {
+                    perRoad.merge(e.getKey(), e.getValue(), Integer::sum);
+                }
+            }
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("Snapshot ").append(s.getSnapshotId()).append(": ").append(total).append(" vehicles in network");
+        for (Map.Entry<RoadEnum, Integer> e : perRoad.entrySet()) {
+            if (e.getValue() > 0)
+                sb.append("\n  road ").append(e.getKey()).append(": ").append(e.getValue());
+        }
+        for (Map.Entry<String, Integer> e : perQueue.entrySet()) {
+            if (e.getValue() > 0)
+                sb.append("\n  queue ").append(e.getKey()).append(": ").append(e.getValue());
+        }
+        logCb.accept(sb.toString());
+    }
+
+    /**
+     * Create a new sprite for an entering vehicle.
      *
      * @param ve the vehicle event
      * @param v  the vehicle instance
@@ -350,31 +529,19 @@ public class DashboardController {
         synchronized (this.sprites) {
             this.sprites.put(v.getId(), new VehicleSprite(v.getId(), v, p.x, p.y));
         }
-        long ent = System.currentTimeMillis();
-        this.stats.recordEntranceTimestamp(v.getId(), ent);
-        this.stats.recordCreatedVehicle(v);
     }
 
     /**
      * Handle a vehicle departure from a node.
      * <p>
-     * This records departure timestamps, computes and records wait
-     * times (if any) and removes the sprite from visual queues.
+     * This removes the sprite from visual queues and compacts the queue
+     * the vehicle left.
      *
      * @param ve the vehicle event
      * @param v  the vehicle instance
      */
     private void handleVehicleDeparture(VehicleEvent ve, Vehicle v) {
         String id = v.getId();
-
-        Long sigArr = this.stats.removeSignalArrival(id);
-        if (sigArr != null) {
-            long waitMs = System.currentTimeMillis() - sigArr;
-            VehicleType vtype = v.getType();
-            this.stats.recordWaitForType(vtype, waitMs);
-        }
-
-        this.stats.recordDepartureTimestamp(id);
         this.model.removeSpriteFromAllQueues(id);
         SwingUtilities.invokeLater(this.updateStatsCb);
 
@@ -385,17 +552,16 @@ public class DashboardController {
     /**
      * Handle a vehicle arriving at a traffic signal.
      * <p>
-     * The handler records the signal arrival time, removes the vehicle
-     * from the passing schedule for its previous road, records travel time
-     * since departure, updates statistics, and enqueues the corresponding
-     * sprite into the model's signal queue for the incoming road.
+     * The handler removes the vehicle from the passing schedule for its
+     * previous road, refreshes the statistics view and enqueues the
+     * corresponding sprite into the model's signal queue for the incoming
+     * road.
      *
      * @param ve the vehicle event
      * @param v  the vehicle instance
      */
     private void handleVehicleSignalArrival(VehicleEvent ve, Vehicle v) {
         String id = v.getId();
-        this.stats.recordSignalArrival(id);
 
         RoadEnum removeRoad = roadFromPrevToNode(v, ve.getNode());
         Deque<AbstractMap.SimpleEntry<Long, String>> dq = this.passingSchedule.get(removeRoad);
@@ -409,15 +575,7 @@ public class DashboardController {
                 }
             }
         }
-
-        Long dep = this.stats.removeDepartureTimestamp(id);
-
-        if (dep != null) {
-            long dur = System.currentTimeMillis() - dep;
-            this.stats.recordTravelTime(v, dur);
-        }
         SwingUtilities.invokeLater(this.updateStatsCb);
-        this.stats.recordPassedAtNode(ve.getNode(), v);
 
         RoadEnum incoming = roadFromPrevToNode(v, ve.getNode());
 
@@ -432,8 +590,8 @@ public class DashboardController {
     /**
      * Handle vehicle exit events.
      * <p>
-     * Marks the sprite for removal, records exit statistics and removes
-     * any leftover timestamps and queue entries related to the vehicle.
+     * Marks the sprite for removal and removes any leftover queue entries
+     * related to the vehicle.
      *
      * @param ve the vehicle event
      * @param v  the vehicle instance
@@ -442,11 +600,9 @@ public class DashboardController {
         String id = v.getId();
         synchronized (sprites) {
             VehicleSprite s = sprites.get(id);
-            s.markForRemoval();
+            if (s != null)
+                s.markForRemoval();
         }
-        this.stats.recordExitedVehicle(v);
-        this.stats.recordTripTimeByType(v);
-        this.stats.removeDepartureTimestamp(id);
         this.model.removeSpriteFromAllQueues(id);
         SwingUtilities.invokeLater(this.updateStatsCb);
     }
@@ -470,6 +626,9 @@ public class DashboardController {
             s = this.sprites.get(id);
         }
 
+        if (s == null)
+            return;
+
         RoadEnum road = roadFromPrevToNode(v, ve.getNode());
 
         Point dest = this.nodePositions.get(ve.getNode());
@@ -477,7 +636,8 @@ public class DashboardController {
 
         long baseTime = (road == null) ? 1000L : road.getTime();
         long passMs = (v.getType() == null) ? baseTime : v.getType().getTimeToPass(baseTime);
-        long scheduledFinish = System.currentTimeMillis() + passMs;
+        long start = v.getDepartureTime() > 0 ? v.getDepartureTime() : System.currentTimeMillis();
+        long scheduledFinish = start + passMs;
 
         Deque<AbstractMap.SimpleEntry<Long, String>> dq = this.passingSchedule.get(road);
         synchronized (this.passingSchedule) {
@@ -521,7 +681,7 @@ public class DashboardController {
         NodeEnum prev = v.findPreviousNode(node);
         if (prev == null)
             return null;
-        return RoadEnum.toRoadEnum(prev.toString() + "_" + node.toString());
+        return RoadEnum.between(prev, node);
     }
 
     /**
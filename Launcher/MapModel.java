@@ -43,10 +43,10 @@ public class MapModel {
      */
     public MapModel() {
         this.sprites = new ConcurrentHashMap<>();
-        this.nodePositions = java.util.Collections.synchronizedMap(new EnumMap<>(NodeEnum.class));
-        this.trafficLights = java.util.Collections.synchronizedMap(new EnumMap<>(RoadEnum.class));
+        this.nodePositions = java.util.Collections.synchronizedMap(new TreeMap<>());
+        this.trafficLights = java.util.Collections.synchronizedMap(new TreeMap<>());
         this.signalQueues = new ConcurrentHashMap<>();
-        this.queueStats = java.util.Collections.synchronizedMap(new EnumMap<>(RoadEnum.class));
+        this.queueStats = java.util.Collections.synchronizedMap(new TreeMap<>());
 
         for (RoadEnum r : RoadEnum.values()) {
             if (r.getDestination().getType() == NodeType.CROSSROAD) {
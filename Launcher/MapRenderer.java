@@ -34,8 +34,8 @@ public class MapRenderer extends JPanel {
     private BufferedImage staticMapCache;
     private Dimension lastSize = new Dimension(0, 0);
 
-    private final Map<RoadEnum, RoadGeom> roadGeom = new EnumMap<>(RoadEnum.class);
-    private final Map<RoadEnum, Rectangle> signalRects = new EnumMap<>(RoadEnum.class);
+    private final Map<RoadEnum, RoadGeom> roadGeom = new TreeMap<>();
+    private final Map<RoadEnum, Rectangle> signalRects = new TreeMap<>();
 
     private static final Stroke ROAD_STROKE = new BasicStroke(6, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
     private static final Color ROAD_COLOR = new Color(56, 56, 56);
@@ -168,6 +168,8 @@ public class MapRenderer extends JPanel {
 
     /**
      * Recompute logical node positions for the current component size.
+     * Nodes are placed at the column/row given in the topology, scaled to the
+     * panel; nodes without a position are laid out on a square grid.
      *
      * @param panelW panel width in pixels
      * @param panelH panel height in pixels
@@ -181,22 +183,28 @@ public class MapRenderer extends JPanel {
         int gridW = w - 2 * marginX;
         int gridH = h - 2 * marginY;
 
-        int stepX = (gridW == 0) ? 0 : gridW / 2;
-        int stepY = (gridH == 0) ? 0 : gridH / 2;
+        NodeEnum[] nodes = NodeEnum.values();
+        int autoColumns = (int) Math.ceil(Math.sqrt(nodes.length));
+        double maxCol = 0;
+        double maxRow = 0;
+        double[][] cells = new double[nodes.length][];
+        for (int i = 0; i < nodes.length; i++) {
+            NodeEnum n = nodes[i];
+            cells[i] = n.hasPosition()
+                    ? new double[] { n.getX(), n.getY() }
+                    : new double[] { i % autoColumns, i / autoColumns };
+            maxCol = Math.max(maxCol, cells[i][0]);
+            maxRow = Math.max(maxRow, cells[i][1]);
+        }
 
-        NodeEnum[] layout = new NodeEnum[] {
-                NodeEnum.E1, NodeEnum.E2, NodeEnum.E3,
-                NodeEnum.CR1, NodeEnum.CR2, NodeEnum.CR3,
-                NodeEnum.CR4, NodeEnum.CR5, NodeEnum.S
-        };
+        double stepX = (maxCol == 0) ? 0 : gridW / maxCol;
+        double stepY = (maxRow == 0) ? 0 : gridH / maxRow;
 
         synchronized (nodePositions) {
-            for (int i = 0; i < layout.length; i++) {
-                int row = i / 3;
-                int col = i % 3;
-                int x = marginX + col * stepX;
-                int y = marginY + row * stepY;
-                nodePositions.put(layout[i], new Point(x, y));
+            for (int i = 0; i < nodes.length; i++) {
+                int x = marginX + (int) Math.round(cells[i][0] * stepX);
+                int y = marginY + (int) Math.round(cells[i][1] * stepY);
+                nodePositions.put(nodes[i], new Point(x, y));
             }
         }
     }
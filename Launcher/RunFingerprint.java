@@ -0,0 +1,90 @@
+package Launcher;
+
+import java.nio.charset.StandardCharsets;
+import java.util.TreeMap;
+
+import Node.Topology;
+import Vehicle.Vehicle;
+
+/**
+ * Fingerprints identifying what a run was given and what it generated, so
+ * two result summaries can be checked for comparability.
+ * <p>
+ * The input fingerprint covers the network and every simulation option (the
+ * {@code simulation.}, {@code signal.}, {@code crossroad.} and
+ * {@code routing.} system properties, seed included, except the
+ * {@code signal.epoch} time origin the launcher sets at start). The demand
+ * fingerprint covers the vehicles created during the run, their types and
+ * paths; it is a sum of per-vehicle hashes, so it does not depend on the
+ * order in which the creations were reported. Two seeded runs with the same
+ * input fingerprint and a fixed workload ({@code simulation.vehicles}) have
+ * the same demand fingerprint.
+ */
+public final class RunFingerprint {
+    private static final String[] OPTION_PREFIXES = { "simulation.", "signal.", "crossroad.", "routing." };
+    private static final String START_TIME_OPTION = "signal.epoch";
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private RunFingerprint() {
+    }
+
+    /**
+     * Computes the fingerprint of the network and the simulation options.
+     *
+     * @return 64-bit fingerprint
+     */
+    public static long inputs() {
+        StringBuilder sb = new StringBuilder();
+        TreeMap<String, String> options = new TreeMap<>();
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.equals(START_TIME_OPTION))
+                continue;
+            for (String prefix : OPTION_PREFIXES) {
+                if (name.startsWith(prefix)) {
+                    options.put(name, System.getProperty(name));
+                    break;
+                }
+            }
+        }
+        options.forEach((k, v) -> sb.append(k).append('=').append(v).append('\n'));
+        Topology topology = Topology.get();
+        for (Topology.NodeSpec n : topology.getNodes())
+            sb.append("node ").append(n.name).append(' ').append(n.type).append(' ').append(n.port).append('\n');
+        for (Topology.RoadSpec r : topology.getRoads())
+            sb.append("road ").append(r.origin).append(' ').append(r.destination).append(' ').append(r.travelTime)
+                    .append(' ').append(r.greenLightDuration).append(' ').append(r.lanes).append('\n');
+        for (Topology.PathSpec p : topology.getPaths())
+            sb.append("path ").append(p.weight).append(' ').append(p.nodes).append('\n');
+        return hash(sb.toString());
+    }
+
+    /**
+     * Computes the contribution of one created vehicle to the demand
+     * fingerprint.
+     *
+     * @param v created vehicle
+     * @return 64-bit hash of its id, type and path
+     */
+    public static long vehicle(Vehicle v) {
+        return hash(v.getId() + '|' + v.getType() + '|' + v.getPath());
+    }
+
+    /**
+     * Hashes a string with 64-bit FNV-1a followed by a SplitMix64 finalizer,
+     * so that sums of hashes stay well spread.
+     *
+     * @param s string to hash
+     * @return 64-bit hash
+     */
+    private static long hash(String s) {
+        long h = FNV_OFFSET;
+        for (byte b : s.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= FNV_PRIME;
+        }
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+}
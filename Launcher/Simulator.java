@@ -4,7 +4,6 @@ import Node.*;
 
 import java.io.File;
 import java.util.*;
-import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 import Event.*;
@@ -17,12 +16,45 @@ import Event.*;
  * that reads events into a priority queue and exposes that queue to
  * callers. It also provides lifecycle control methods to start,
  * stop and request a graceful stop of entrance processes.
+ * <p>
+ * With {@code -Dsimulation.launch=threads} the nodes run as threads of the
+ * launcher JVM instead, which is what makes networks of hundreds of nodes
+ * (see {@link TopologyGenerator}) practical on one machine. Such nodes
+ * cannot be stopped individually; they end with the launcher.
+ * {@link #main(String[])} runs a simulation without the dashboard, e.g.
+ *
+ * <pre>
+ * java -Dsimulation.topology=grid:20x20 -Dsimulation.launch=threads -Dcrossroad.mode=loop Launcher.Simulator 60
+ * </pre>
+ *
+ * For comparisons between runs, {@code -Dsimulation.seed=<n>} fixes the
+ * generated demand and {@code -Dsimulation.vehicles=<n>} gives each entrance
+ * a fixed number of vehicles; the headless run then ends as soon as all of
+ * them have exited, and its duration measures how fast the network cleared
+ * the workload.
  */
 public class Simulator {
+    /**
+     * Prefixes of the system properties forwarded to node processes, so
+     * node options given to the launcher (e.g. {@code -Dcrossroad.mode=loop})
+     * reach the nodes.
+     */
+    private static final String[] NODE_PROPERTY_PREFIXES = { "simulation.", "signal.", "crossroad.", "routing." };
+    private static final boolean LAUNCH_THREADS;
+
+    static {
+        String launch = System.getProperty("simulation.launch", "processes");
+        if (!launch.equals("processes") && !launch.equals("threads")) {
+            System.err.println("Invalid simulation.launch '" + launch + "', using processes");
+        }
+        LAUNCH_THREADS = launch.equals("threads");
+    }
+
     private volatile boolean running;
     private java.util.Map<NodeEnum, Process> processes;
+    private final List<Thread> nodeThreads = new ArrayList<>();
 
-    private PriorityBlockingQueue<Event> eventQueue = new PriorityBlockingQueue<Event>(10,
+    private BoundedEventQueue eventQueue = new BoundedEventQueue(EventHandler.CAPACITY,
             Comparator.comparingLong(Event::getLogicalClock));
 
     private EventHandler eventHandler;
@@ -58,19 +90,25 @@ public class Simulator {
         System.out.println("STARTING TRAFFIC SIMULATION");
         System.out.println("=====================================");
 
+        // Shared time origin of coordinated signal plans, passed to every node.
+        if (System.getProperty("signal.epoch") == null) {
+            System.setProperty("signal.epoch", Long.toString(System.currentTimeMillis()));
+        }
+
         this.eventHandler = new EventHandler(eventQueue, running);
         this.eventHandler.start();
 
-        System.out.println("Starting nodes...");
+        System.out.println("Starting " + NodeEnum.count() + " nodes of " + Topology.get().getSource()
+                + (LAUNCH_THREADS ? " as threads..." : "..."));
         for (NodeEnum node : NodeEnum.values()) {
             if (node.getType() == NodeType.ENTRANCE) {
-                startProcess(node, "Node.Entrance", "Entrance");
+                startNode(node, "Node.Entrance", "Entrance");
                 continue;
             } else if (node.getType() == NodeType.EXIT) {
-                startProcess(node, "Node.Exit", "Exit");
+                startNode(node, "Node.Exit", "Exit");
                 continue;
             } else {
-                startProcess(node, "Node.Crossroad", "Crossroad");
+                startNode(node, "Node.Crossroad", "Crossroad");
             }
         }
 
@@ -85,11 +123,58 @@ public class Simulator {
         System.out.println("=====================================");
     }
 
+    /**
+     * Start a node as a process or, with {@code simulation.launch=threads},
+     * as a thread of this JVM.
+     *
+     * @param node      the node enum to start
+     * @param mainClass the fully-qualified main class name to run
+     * @param roleLabel human-readable label used for logging
+     */
+    private void startNode(NodeEnum node, String mainClass, String roleLabel) {
+        if (LAUNCH_THREADS) {
+            startThread(node, mainClass, roleLabel);
+        } else {
+            startProcess(node, mainClass, roleLabel);
+        }
+    }
+
+    /**
+     * Run the main method of a node class on a daemon thread of this JVM.
+     * The node reads the same system properties and topology as the
+     * launcher.
+     *
+     * @param node      the node enum to start
+     * @param mainClass the fully-qualified main class name to run
+     * @param roleLabel human-readable label used for logging
+     */
+    private void startThread(NodeEnum node, String mainClass, String roleLabel) {
+        try {
+            java.lang.reflect.Method main = Class.forName(mainClass).getMethod("main", String[].class);
+            Thread t = new Thread(() -> {
+                try {
+                    main.invoke(null, (Object) new String[] { node.toString() });
+                } catch (Exception e) {
+                    System.err.println(" Node " + node + " failed: " + e);
+                }
+            }, node.toString());
+            t.setDaemon(true);
+            t.start();
+            this.nodeThreads.add(t);
+
+            System.out.println(" " + roleLabel + " " + node + " started on port " + node.getPort());
+        } catch (Exception e) {
+            System.err.println(" Error starting " + node + ": " + e.getMessage());
+        }
+    }
+
     /**
      * Start an external Java process for the given node.
      * <p>
      * The method uses {@link ProcessBuilder} to spawn a JVM running
      * the specified {@code mainClass} with the node enum as an argument.
+     * Node options set as system properties on the launcher are passed on
+     * to the new JVM.
      * The resulting {@link Process} is stored in the {@code processes}
      * map so it can be stopped later.
      *
@@ -101,7 +186,18 @@ public class Simulator {
         try {
             String classpath = System.getProperty("java.class.path");
             File workDir = new File(System.getProperty("user.dir"));
-            ProcessBuilder pb = new ProcessBuilder(this.javaCmd, "-cp", classpath, mainClass, node.toString());
+            List<String> command = new ArrayList<>();
+            command.add(this.javaCmd);
+            for (String key : System.getProperties().stringPropertyNames()) {
+                for (String prefix : NODE_PROPERTY_PREFIXES) {
+                    if (key.startsWith(prefix)) {
+                        command.add("-D" + key + "=" + System.getProperty(key));
+                        break;
+                    }
+                }
+            }
+            command.addAll(Arrays.asList("-cp", classpath, mainClass, node.toString()));
+            ProcessBuilder pb = new ProcessBuilder(command);
             pb.directory(workDir);
             Process process = pb.start();
             this.processes.put(node, process);
@@ -227,9 +323,60 @@ public class Simulator {
     /**
      * Return the simulator's event queue.
      *
-     * @return a priority blocking queue of {@link Event}
+     * @return a bounded priority queue of {@link Event}
      */
-    public PriorityBlockingQueue<Event> getEventQueue() {
+    public BoundedEventQueue getEventQueue() {
         return this.eventQueue;
     }
+
+    /**
+     * Return the number of events the event handler has shed because its
+     * queue was full.
+     *
+     * @return total shed events (0 if the handler was never started)
+     */
+    public long getShedEventCount() {
+        return (this.eventHandler == null) ? 0L : this.eventHandler.getTotalShedCount();
+    }
+
+    /**
+     * Run a simulation without the dashboard, then print how many events of
+     * each type were received and a {@link Statistics} summary labelled with
+     * the signal control and routing mode, so runs with different settings
+     * can be compared. With a fixed workload the run ends early once every
+     * vehicle has exited.
+     *
+     * @param args optional duration in seconds (default 60), the limit for
+     *             fixed workloads
+     * @throws InterruptedException if interrupted while collecting events
+     */
+    public static void main(String[] args) throws InterruptedException {
+        long seconds = args.length > 0 ? Long.parseLong(args[0]) : 60L;
+        Simulator simulator = new Simulator();
+        simulator.startSimulation();
+
+        Map<EventType, Integer> counts = new EnumMap<>(EventType.class);
+        Statistics stats = new Statistics();
+        long start = System.currentTimeMillis();
+        long end = start + seconds * 1000L;
+        int budget = Integer.parseInt(System.getProperty("simulation.vehicles", "0"));
+        long workload = budget <= 0 ? 0L : (long) budget * NodeEnum.getEntrances().size();
+        while (System.currentTimeMillis() < end && (workload == 0L || stats.getTotalExited() < workload)) {
+            Event e = simulator.getEventQueue().poll(100, TimeUnit.MILLISECONDS);
+            if (e == null)
+                continue;
+            counts.merge(e.getType(), 1, Integer::sum);
+            if (e instanceof VehicleEvent)
+                stats.record((VehicleEvent) e);
+            else if (e instanceof RoadOccupancyEvent)
+                stats.recordOccupancy((RoadOccupancyEvent) e);
+        }
+
+        System.out.println("Events received: " + counts + " (shed " + simulator.getShedEventCount() + ")");
+        String label = "signal.control=" + System.getProperty("signal.control", "fixed")
+                + ", routing.mode=" + System.getProperty("routing.mode", "static");
+        System.out.print(stats.formatSummary(label, System.currentTimeMillis() - start));
+        simulator.stopSimulation();
+        System.exit(0);
+    }
 }
\ No newline at end of file
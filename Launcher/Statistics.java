@@ -1,6 +1,11 @@
 package Launcher;
 
+import Event.RoadOccupancyEvent;
+import Event.VehicleEvent;
 import Node.NodeEnum;
+import Node.NodeType;
+import Traffic.RoadEnum;
+import Utils.RandomStreams;
 import Vehicle.*;
 import java.util.*;
 
@@ -9,14 +14,19 @@ import java.util.*;
  * <p>
  * This thread-safe helper aggregates counts and timing information
  * produced by the simulator: total vehicles created/exited, per-type
- * counters, wait/road/trip timing aggregates, and per-node pass counts.
- * Methods are synchronized to allow safe concurrent updates from
- * simulator threads and reads from the UI thread.
+ * counters, wait/road/trip timing aggregates, per-node pass counts, road
+ * occupancy samples, the queue of every lane of multi-lane roads and the
+ * {@link RunFingerprint} of the demand.
+ * Methods are synchronized to allow safe concurrent updates from the
+ * dashboard's event workers and reads from the UI thread.
  */
 public class Statistics {
+    private static final int FULLEST_ROADS = 5;
+
     private int totalCreated = 0;
     private int totalExited = 0;
     private int completedTrips = 0;
+    private long demandFingerprint = 0L;
 
     private final Map<String, Long> departTimestamps = new HashMap<>();
     private final Map<String, Long> entranceTimestamps = new HashMap<>();
@@ -33,7 +43,116 @@ public class Statistics {
     private final Map<VehicleType, Long> minTripByType = new EnumMap<>(VehicleType.class);
     private final Map<VehicleType, Long> maxTripByType = new EnumMap<>(VehicleType.class);
 
-    private final Map<NodeEnum, Map<VehicleType, Integer>> passedByNodeByType = new EnumMap<>(NodeEnum.class);
+    private final Map<NodeEnum, Map<VehicleType, Integer>> passedByNodeByType = new TreeMap<>();
+    private final Map<RoadEnum, long[]> occupancyByRoad = new TreeMap<>();
+    private final Map<String, Integer> queuedByLane = new HashMap<>();
+    private final Map<String, QueueStats> queueStatsByLane = new TreeMap<>();
+
+    /**
+     * Record the statistics carried by a vehicle event: creation, wait at a
+     * signal (signal arrival to departure), road travel time (departure to
+     * signal arrival), passes per node and trip time on exit.
+     *
+     * @param ve the vehicle event
+     */
+    public synchronized void record(VehicleEvent ve) {
+        Vehicle v = ve.getVehicle();
+        if (v == null)
+            return;
+        String id = v.getId();
+        switch (ve.getType()) {
+            case NEW_VEHICLE:
+                recordEntranceTimestamp(id, System.currentTimeMillis());
+                recordCreatedVehicle(v);
+                break;
+            case VEHICLE_DEPARTURE:
+                Long sigArr = removeSignalArrival(id);
+                if (sigArr != null)
+                    recordWaitForType(v.getType(), System.currentTimeMillis() - sigArr);
+                recordDepartureTimestamp(id);
+                recordLaneQueue(ve.getNode(), v, -1);
+                break;
+            case VEHICLE_SIGNAL_ARRIVAL:
+                recordSignalArrival(id);
+                Long dep = removeDepartureTimestamp(id);
+                if (dep != null)
+                    recordTravelTime(v, System.currentTimeMillis() - dep);
+                recordPassedAtNode(ve.getNode(), v);
+                recordLaneQueue(ve.getNode(), v, 1);
+                break;
+            case VEHICLE_EXIT:
+                recordExitedVehicle(v);
+                recordTripTimeByType(v);
+                removeDepartureTimestamp(id);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Record a vehicle joining or leaving the queue of its lane at a
+     * crossroad. Only roads with more than one lane are tracked; the queue
+     * size is sampled after every change.
+     *
+     * @param node  crossroad the vehicle is queued at
+     * @param v     the vehicle
+     * @param delta +1 when the vehicle reaches the signal, -1 when it leaves
+     */
+    private void recordLaneQueue(NodeEnum node, Vehicle v, int delta) {
+        RoadEnum road = RoadEnum.between(v.findPreviousNode(node), node);
+        if (road == null || road.getLanes() == 1)
+            return;
+        String lane = road.laneName(v.getLane());
+        int queued = Math.max(0, this.queuedByLane.getOrDefault(lane, 0) + delta);
+        this.queuedByLane.put(lane, queued);
+        this.queueStatsByLane.computeIfAbsent(lane, l -> new QueueStats()).recordSample(queued);
+    }
+
+    /**
+     * Returns the queue statistics of every lane of the multi-lane roads.
+     *
+     * @return map of lane name to its queue statistics
+     */
+    public synchronized Map<String, QueueStats> getLaneQueueStats() {
+        return new TreeMap<>(this.queueStatsByLane);
+    }
+
+    /**
+     * Record a road occupancy report: for every road the number of samples,
+     * the sum and the peak of the space in use, and the samples in which the
+     * road had no room left for a car.
+     *
+     * @param e the occupancy report
+     */
+    public synchronized void recordOccupancy(RoadOccupancyEvent e) {
+        for (Map.Entry<RoadEnum, Integer> entry : e.getOccupied().entrySet()) {
+            RoadEnum road = entry.getKey();
+            int used = entry.getValue();
+            long[] o = this.occupancyByRoad.computeIfAbsent(road, r -> new long[4]);
+            o[0]++;
+            o[1] += used;
+            o[2] = Math.max(o[2], used);
+            if (road.getCapacity() - used < VehicleType.CAR.getLength())
+                o[3]++;
+        }
+    }
+
+    /**
+     * Returns the occupancy of every reported road.
+     *
+     * @return map of road to {average, peak, time full}, each in percent
+     */
+    public synchronized Map<RoadEnum, double[]> getOccupancyPercent() {
+        Map<RoadEnum, double[]> result = new TreeMap<>();
+        for (Map.Entry<RoadEnum, long[]> e : this.occupancyByRoad.entrySet()) {
+            long[] o = e.getValue();
+            double capacity = e.getKey().getCapacity();
+            result.put(e.getKey(), new double[] { 100.0 * o[1] / o[0] / capacity, 100.0 * o[2] / capacity,
+                    100.0 * o[3] / o[0] });
+        }
+        return result;
+    }
 
     /**
      * Record that a vehicle was created.
@@ -44,6 +163,7 @@ public class Statistics {
         if (v == null)
             return;
         this.totalCreated++;
+        this.demandFingerprint += RunFingerprint.vehicle(v);
         VehicleType vt = v.getType();
         if (vt != null)
             this.createdByType.put(vt, this.createdByType.getOrDefault(vt, 0) + 1);
@@ -263,7 +383,7 @@ public class Statistics {
      * @return map of node -> (map of vehicle type -> count)
      */
     public synchronized Map<NodeEnum, Map<VehicleType, Integer>> getPassedByNodeByType() {
-        Map<NodeEnum, Map<VehicleType, Integer>> copy = new EnumMap<>(NodeEnum.class);
+        Map<NodeEnum, Map<VehicleType, Integer>> copy = new TreeMap<>();
         for (Map.Entry<NodeEnum, Map<VehicleType, Integer>> e : passedByNodeByType.entrySet()) {
             copy.put(e.getKey(), new EnumMap<>(e.getValue()));
         }
@@ -360,4 +480,58 @@ public class Statistics {
             min = 0L;
         return new long[] { min, avg, max };
     }
+
+    /**
+     * Format a run summary: vehicles created and exited, network throughput
+     * (exits per minute), trip times, average wait per vehicle type,
+     * throughput of every crossroad, the {@value #FULLEST_ROADS} roads
+     * with the highest average occupancy and the queues of the lanes of
+     * multi-lane roads, followed by the seed and the {@link RunFingerprint}
+     * of the inputs and of the demand.
+     *
+     * @param label     description of the run (for example the signal control)
+     * @param elapsedMs duration of the run in ms
+     * @return multi-line report
+     */
+    public synchronized String formatSummary(String label, long elapsedMs) {
+        double minutes = Math.max(1L, elapsedMs) / 60000.0;
+        long[] trip = getOverallTripStatsMillis();
+        StringBuilder sb = new StringBuilder();
+        sb.append("=== Summary: ").append(label).append(" (").append(elapsedMs / 1000).append(" s) ===\n");
+        sb.append(String.format("Vehicles created %d, exited %d (network throughput %.1f/min); "
+                + "trip min/avg/max %d/%d/%d ms%n",
+                totalCreated, totalExited, totalExited / minutes, trip[0], trip[1], trip[2]));
+        sb.append("Average wait (ms):");
+        for (Map.Entry<VehicleType, Long> e : getAvgWaitByType().entrySet())
+            sb.append(' ').append(e.getKey()).append('=').append(e.getValue());
+        sb.append('\n').append("Throughput (vehicles/min):");
+        for (Map.Entry<NodeEnum, Map<VehicleType, Integer>> e : passedByNodeByType.entrySet()) {
+            if (e.getKey().getType() != NodeType.CROSSROAD)
+                continue;
+            int passed = 0;
+            for (int c : e.getValue().values())
+                passed += c;
+            sb.append(String.format(" %s=%.1f", e.getKey(), passed / minutes));
+        }
+        sb.append('\n');
+        List<Map.Entry<RoadEnum, double[]>> occupancy = new ArrayList<>(getOccupancyPercent().entrySet());
+        if (!occupancy.isEmpty()) {
+            occupancy.sort((a, b) -> Double.compare(b.getValue()[0], a.getValue()[0]));
+            sb.append("Fullest roads (avg/peak % of capacity, % of time full):");
+            for (Map.Entry<RoadEnum, double[]> e : occupancy.subList(0, Math.min(FULLEST_ROADS, occupancy.size())))
+                sb.append(String.format(" %s=%.0f/%.0f/%.0f", e.getKey(), e.getValue()[0], e.getValue()[1],
+                        e.getValue()[2]));
+            sb.append('\n');
+        }
+        if (!queueStatsByLane.isEmpty()) {
+            sb.append("Lane queues (avg/max vehicles):");
+            for (Map.Entry<String, QueueStats> e : queueStatsByLane.entrySet())
+                sb.append(String.format(" %s=%.1f/%d", e.getKey(), e.getValue().getAverage(), e.getValue().getMax()));
+            sb.append('\n');
+        }
+        Long seed = RandomStreams.getSeed();
+        sb.append(String.format("Run fingerprint: inputs=%016x demand=%016x (seed %s)%n", RunFingerprint.inputs(),
+                demandFingerprint, seed == null ? "none" : seed));
+        return sb.toString();
+    }
 }
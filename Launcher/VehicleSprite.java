@@ -11,8 +11,9 @@ import java.awt.geom.AffineTransform;
  * <p>
  * A VehicleSprite holds the vehicle identity, its current position and
  * animation state used to interpolate movement between points on the map.
- * Instances are mutated by the UI thread (animation timer) and read by the
- * renderer.
+ * Instances are mutated by the UI thread (animation timer) and by the
+ * controller's event workers, so state changes are synchronized on the
+ * sprite.
  */
 public class VehicleSprite {
     public final String id;
@@ -64,7 +65,7 @@ public class VehicleSprite {
      * @param durationMs animation duration in milliseconds (values &lt;= 0 are
      *                   treated as 1ms)
      */
-    public void setTarget(double tx, double ty, long durationMs) {
+    public synchronized void setTarget(double tx, double ty, long durationMs) {
         double dx = tx - x;
         double dy = ty - y;
         if (Math.hypot(dx, dy) <= 1e-6) {
@@ -89,14 +90,14 @@ public class VehicleSprite {
      * The renderer / controller will check {@link #shouldRemoveNow()} to
      * actually remove the sprite from the model.
      */
-    public void markForRemoval() {
+    public synchronized void markForRemoval() {
         this.remove = true;
     }
 
     /**
      * Returns true if the sprite was marked to be removed.
      */
-    public boolean shouldRemoveNow() {
+    public synchronized boolean shouldRemoveNow() {
         return this.remove;
     }
 
@@ -110,7 +111,7 @@ public class VehicleSprite {
      *
      * @return {@code true} if the sprite position was updated
      */
-    public boolean updatePosition() {
+    public synchronized boolean updatePosition() {
         if (!moving) {
             return false;
         }
@@ -156,7 +157,7 @@ public class VehicleSprite {
      *
      * @param g2 graphics context (must not be null)
      */
-    public void draw(Graphics2D g2) {
+    public synchronized void draw(Graphics2D g2) {
         VehicleType vt = vehicle.getType();
         if (vt == null)
             vt = VehicleType.CAR;
@@ -0,0 +1,360 @@
+package Node;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Arrival process of vehicles at an entrance.
+ * <p>
+ * A profile gives the time of the next arrival after a given time, in
+ * seconds since the entrance started. Rate profiles describe a varying
+ * arrival rate {@code rate(t)} in vehicles per second and are sampled by
+ * thinning: candidate arrivals are drawn from a Poisson process at the
+ * profile's peak rate and each is kept with probability
+ * {@code rate(t) / peak}. A trace replays recorded arrival times instead.
+ * <p>
+ * The profile of an entrance is read from the
+ * {@code simulation.arrivals.<entrance>} system property, or from
+ * {@code simulation.arrivals} for all entrances, or is a constant rate of
+ * {@code simulation.lambda}:
+ *
+ * <pre>
+ * constant:&lt;rate&gt;
+ * piecewise:&lt;s&gt;=&lt;rate&gt;,&lt;s&gt;=&lt;rate&gt;,...[@&lt;period s&gt;]
+ * sine:&lt;mean&gt;,&lt;amplitude&gt;,&lt;period s&gt;[,&lt;peak at s&gt;]
+ * trace:&lt;file&gt;
+ * </pre>
+ *
+ * A piecewise profile holds each rate from its start time until the next
+ * one, and repeats after the period if one is given; without a period a
+ * last rate of 0 ends the arrivals. For example
+ * {@code piecewise:0=0.2,60=1.5,120=0.3@180} is a one-minute rush hour
+ * every three minutes. A sine profile oscillates between
+ * {@code mean - amplitude} and {@code mean + amplitude}, never below zero.
+ * A trace file lists one arrival per line as a time in ms since the start,
+ * optionally followed by the entrance name, in which case only the lines
+ * of this entrance are replayed; {@code #} starts a comment. The entrance
+ * stops generating at the end of the trace.
+ */
+public abstract class ArrivalProfile {
+
+    /**
+     * Returns the time of the next arrival.
+     *
+     * @param now time of the previous arrival, in s since the start
+     * @param rnd random stream of the entrance
+     * @return time of the next arrival in s, or
+     *         {@link Double#POSITIVE_INFINITY} if there are no more
+     */
+    public abstract double next(double now, SplittableRandom rnd);
+
+    /**
+     * Returns the profile of an entrance from the system properties.
+     *
+     * @param entrance entrance node
+     * @param lambda   constant rate used when no profile is configured
+     * @return the arrival profile
+     * @throws IllegalArgumentException if the profile is malformed or its
+     *                                  trace cannot be read
+     */
+    public static ArrivalProfile forEntrance(NodeEnum entrance, double lambda) {
+        String spec = System.getProperty("simulation.arrivals." + entrance);
+        if (spec == null || spec.isEmpty())
+            spec = System.getProperty("simulation.arrivals");
+        if (spec == null || spec.isEmpty())
+            return new Constant(lambda);
+        try {
+            return parse(spec.trim(), entrance);
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalArgumentException("Invalid arrival profile '" + spec + "' for " + entrance + ": "
+                    + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Parse a profile specification.
+     *
+     * @param spec     specification, as described in the class comment
+     * @param entrance entrance the profile is for
+     * @return the arrival profile
+     * @throws IOException if a trace file cannot be read
+     */
+    static ArrivalProfile parse(String spec, NodeEnum entrance) throws IOException {
+        int colon = spec.indexOf(':');
+        if (colon < 0)
+            throw new IllegalArgumentException("expected <kind>:<parameters>");
+        String kind = spec.substring(0, colon);
+        String args = spec.substring(colon + 1);
+        switch (kind) {
+            case "constant":
+                return new Constant(Double.parseDouble(args));
+            case "piecewise":
+                return Piecewise.parse(args);
+            case "sine": {
+                String[] f = args.split(",");
+                if (f.length != 3 && f.length != 4)
+                    throw new IllegalArgumentException("expected sine:<mean>,<amplitude>,<period>[,<peak at>]");
+                return new Sine(Double.parseDouble(f[0]), Double.parseDouble(f[1]), Double.parseDouble(f[2]),
+                        f.length == 4 ? Double.parseDouble(f[3]) : 0.0);
+            }
+            case "trace":
+                return Trace.load(args, entrance);
+            default:
+                throw new IllegalArgumentException("unknown profile kind '" + kind + "'");
+        }
+    }
+
+    /**
+     * Profile given by an arrival rate that varies over time, sampled by
+     * thinning against its peak rate.
+     */
+    abstract static class RateProfile extends ArrivalProfile {
+        /**
+         * Returns the arrival rate at a given time.
+         *
+         * @param t time in s since the start
+         * @return rate in vehicles per second
+         */
+        abstract double rate(double t);
+
+        /**
+         * Returns the highest rate of the profile.
+         *
+         * @return peak rate in vehicles per second
+         */
+        abstract double peak();
+
+        /**
+         * Returns the time from which the rate stays 0 for good.
+         *
+         * @return time in s, or {@link Double#POSITIVE_INFINITY} if arrivals
+         *         never stop
+         */
+        double end() {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        @Override
+        public double next(double now, SplittableRandom rnd) {
+            double peak = peak();
+            if (peak <= 0)
+                return Double.POSITIVE_INFINITY;
+            double end = end();
+            double t = now;
+            do {
+                t += -Math.log(1 - rnd.nextDouble()) / peak;
+                if (t >= end)
+                    return Double.POSITIVE_INFINITY;
+            } while (rnd.nextDouble() * peak > rate(t));
+            return t;
+        }
+    }
+
+    /**
+     * Constant rate: a homogeneous Poisson process. Thinning never rejects,
+     * so this draws plain exponential intervals.
+     */
+    static final class Constant extends RateProfile {
+        private final double rate;
+
+        /**
+         * Create a constant profile.
+         *
+         * @param rate arrival rate in vehicles per second
+         */
+        Constant(double rate) {
+            if (rate < 0)
+                throw new IllegalArgumentException("negative rate " + rate);
+            this.rate = rate;
+        }
+
+        @Override
+        double rate(double t) {
+            return this.rate;
+        }
+
+        @Override
+        double peak() {
+            return this.rate;
+        }
+    }
+
+    /**
+     * Rate held constant between breakpoints, optionally periodic.
+     */
+    static final class Piecewise extends RateProfile {
+        private final double[] starts;
+        private final double[] rates;
+        private final double period;
+        private final double peak;
+
+        /**
+         * Create a piecewise profile.
+         *
+         * @param starts start time of each step in s, increasing, the first
+         *               one 0
+         * @param rates  rate of each step in vehicles per second
+         * @param period repetition period in s, or 0 to hold the last rate
+         */
+        Piecewise(double[] starts, double[] rates, double period) {
+            if (starts.length == 0 || starts[0] != 0.0)
+                throw new IllegalArgumentException("the first step must start at 0");
+            double max = 0;
+            for (int i = 0; i < starts.length; i++) {
+                if (i > 0 && starts[i] <= starts[i - 1])
+                    throw new IllegalArgumentException("step times must increase");
+                if (rates[i] < 0)
+                    throw new IllegalArgumentException("negative rate " + rates[i]);
+                max = Math.max(max, rates[i]);
+            }
+            if (period < 0 || (period > 0 && period <= starts[starts.length - 1]))
+                throw new IllegalArgumentException("period must be after the last step");
+            this.starts = starts;
+            this.rates = rates;
+            this.period = period;
+            this.peak = max;
+        }
+
+        /**
+         * Parse the parameters of a piecewise profile.
+         *
+         * @param args {@code <s>=<rate>,...[@<period>]}
+         * @return the profile
+         */
+        static Piecewise parse(String args) {
+            double period = 0;
+            int at = args.indexOf('@');
+            if (at >= 0) {
+                period = Double.parseDouble(args.substring(at + 1));
+                args = args.substring(0, at);
+            }
+            String[] steps = args.split(",");
+            double[] starts = new double[steps.length];
+            double[] rates = new double[steps.length];
+            for (int i = 0; i < steps.length; i++) {
+                String[] kv = steps[i].trim().split("=");
+                if (kv.length != 2)
+                    throw new IllegalArgumentException("expected <s>=<rate>, got " + steps[i]);
+                starts[i] = Double.parseDouble(kv[0]);
+                rates[i] = Double.parseDouble(kv[1]);
+            }
+            return new Piecewise(starts, rates, period);
+        }
+
+        @Override
+        double rate(double t) {
+            if (this.period > 0)
+                t %= this.period;
+            int i = Arrays.binarySearch(this.starts, t);
+            return this.rates[i >= 0 ? i : -i - 2];
+        }
+
+        @Override
+        double peak() {
+            return this.peak;
+        }
+
+        @Override
+        double end() {
+            int last = this.starts.length - 1;
+            return this.period == 0 && this.rates[last] == 0 ? this.starts[last] : Double.POSITIVE_INFINITY;
+        }
+    }
+
+    /**
+     * Rate following a sine wave, such as a daily cycle compressed into the
+     * length of a run.
+     */
+    static final class Sine extends RateProfile {
+        private final double mean;
+        private final double amplitude;
+        private final double period;
+        private final double peakAt;
+
+        /**
+         * Create a sine profile.
+         *
+         * @param mean      mean rate in vehicles per second
+         * @param amplitude amplitude in vehicles per second
+         * @param period    period in s
+         * @param peakAt    time of the first peak in s
+         */
+        Sine(double mean, double amplitude, double period, double peakAt) {
+            if (period <= 0)
+                throw new IllegalArgumentException("period must be positive");
+            this.mean = mean;
+            this.amplitude = Math.abs(amplitude);
+            this.period = period;
+            this.peakAt = peakAt;
+        }
+
+        @Override
+        double rate(double t) {
+            return Math.max(0.0, this.mean + this.amplitude * Math.cos(2 * Math.PI * (t - this.peakAt) / this.period));
+        }
+
+        @Override
+        double peak() {
+            return Math.max(0.0, this.mean + this.amplitude);
+        }
+    }
+
+    /**
+     * Replay of recorded arrival times.
+     */
+    static final class Trace extends ArrivalProfile {
+        private final double[] times;
+        private int next = 0;
+
+        /**
+         * Create a trace profile.
+         *
+         * @param times arrival times in s since the start, sorted
+         */
+        Trace(double[] times) {
+            this.times = times;
+        }
+
+        /**
+         * Load the arrivals of an entrance from a trace file.
+         *
+         * @param file     trace file
+         * @param entrance entrance whose lines are replayed
+         * @return the profile
+         * @throws IOException if the file cannot be read
+         */
+        static Trace load(String file, NodeEnum entrance) throws IOException {
+            List<Double> times = new ArrayList<>();
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int hash = line.indexOf('#');
+                    if (hash >= 0)
+                        line = line.substring(0, hash);
+                    line = line.trim();
+                    if (line.isEmpty())
+                        continue;
+                    String[] f = line.split("\\s+");
+                    if (f.length > 1 && !f[1].equals(entrance.toString()))
+                        continue;
+                    times.add(Long.parseLong(f[0]) / 1000.0);
+                }
+            }
+            double[] sorted = new double[times.size()];
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = times.get(i);
+            }
+            Arrays.sort(sorted);
+            return new Trace(sorted);
+        }
+
+        @Override
+        public double next(double now, SplittableRandom rnd) {
+            if (this.next == this.times.length)
+                return Double.POSITIVE_INFINITY;
+            return Math.max(now, this.times[this.next++]);
+        }
+    }
+}
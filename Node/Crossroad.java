@@ -1,20 +1,108 @@
 package Node;
 
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
 
 import Comunication.*;
+import Event.*;
 import Traffic.*;
 import Utils.*;
 import Vehicle.Vehicle;
 
 /**
  * Class to run a crossroad node. Initializes traffic lights, pass-through
- * handlers and coordinators (round-robin) as needed.
+ * handlers and the signal-phase scheduler as needed.
+ * <p>
+ * With {@code -Dsignal.skipEmpty=true} the phase of a traffic light is
+ * skipped while no vehicle is waiting at it.
+ * <p>
+ * The pedestrian phase of single-signal crossroads lasts
+ * {@code -Dsignal.pedestrianGreenMs} (default 5000). With
+ * {@code -Dsignal.pedestrianMode=demand} it is only served after a
+ * pedestrian call; calls are simulated at
+ * {@code -Dsignal.pedestrianCallRate} presses per second (default 0.05).
+ * The default mode, {@code fixed}, serves it on every cycle.
+ * <p>
+ * {@code -Dsignal.control} selects the signal timing: {@code fixed}
+ * (default) gives each road its green time; {@code actuated} extends green
+ * while vehicles keep arriving, between {@code -Dsignal.minGreenMs} (default
+ * 1000) and {@code -Dsignal.maxGreenMs} (default 6000), gaps out after
+ * {@code -Dsignal.gapMs} (default 1500) without arrivals and skips phases
+ * with no waiting vehicle; {@code max_pressure} grants, at every phase
+ * change, the incoming road with the largest queue relative to the queues
+ * downstream of it, learnt from the neighbouring crossroads (single-signal
+ * crossroads keep fixed timing); {@code coordinated} runs a common cycle
+ * with per-crossroad offsets from the shared epoch {@code -Dsignal.epoch}
+ * (set by the {@code Simulator}), so that the heaviest routes get green
+ * waves (see {@link GreenWave}).
+ * <p>
+ * The execution model is selected with {@code -Dcrossroad.mode}:
+ * {@code threads} (default) runs every pass-through handler, light and the
+ * sorter on its own thread, with road traversals released by a
+ * {@link TimingWheel}; {@code loop} drives all of them from a single
+ * {@link EventLoop}, leaving only the {@link Receiver} on its own thread.
+ * <p>
+ * With {@code -Drouting.mode=dynamic} departing vehicles are routed by a
+ * {@link RoutingTable} kept up to date with the neighbouring crossroads,
+ * instead of following the path chosen at their entrance ({@code static},
+ * the default).
+ * <p>
+ * Unless {@code -Dsimulation.roadCapacity=false}, vehicles only leave for
+ * the next crossroad while the road to it has room, and the room freed on
+ * the incoming roads is handed back upstream (see {@link RoadCapacity}).
  */
 public class Crossroad {
+    private static final boolean SKIP_EMPTY_PHASES;
+    private static final boolean LOOP_MODE;
+    private static final long PEDESTRIAN_GREEN_MS;
+    private static final boolean PEDESTRIAN_ON_DEMAND;
+    private static final double PEDESTRIAN_CALL_RATE;
+    private static final boolean DYNAMIC_ROUTING;
+    private static final SignalControl SIGNAL_CONTROL;
+    private static final long MIN_GREEN_MS;
+    private static final long MAX_GREEN_MS;
+    private static final long GAP_MS;
+    private static final long EPOCH;
+
+    static {
+        SKIP_EMPTY_PHASES = Boolean.parseBoolean(System.getProperty("signal.skipEmpty", "false"));
+        PEDESTRIAN_GREEN_MS = Long.parseLong(System.getProperty("signal.pedestrianGreenMs", "5000"));
+        PEDESTRIAN_ON_DEMAND = System.getProperty("signal.pedestrianMode", "fixed").equals("demand");
+        PEDESTRIAN_CALL_RATE = Double.parseDouble(System.getProperty("signal.pedestrianCallRate", "0.05"));
+        String mode = System.getProperty("crossroad.mode", "threads");
+        if (!mode.equals("threads") && !mode.equals("loop")) {
+            System.err.println("Invalid crossroad.mode '" + mode + "', using threads");
+        }
+        LOOP_MODE = mode.equals("loop");
+        String routing = System.getProperty("routing.mode", "static");
+        if (!routing.equals("static") && !routing.equals("dynamic")) {
+            System.err.println("Invalid routing.mode '" + routing + "', using static");
+        }
+        DYNAMIC_ROUTING = routing.equals("dynamic");
+        String control = System.getProperty("signal.control", "fixed");
+        SignalControl parsed = SignalControl.toSignalControl(control);
+        if (parsed == null) {
+            System.err.println("Invalid signal.control '" + control + "', using fixed");
+            parsed = SignalControl.FIXED;
+        }
+        SIGNAL_CONTROL = parsed;
+        MIN_GREEN_MS = Long.parseLong(System.getProperty("signal.minGreenMs", "1000"));
+        MAX_GREEN_MS = Long.parseLong(System.getProperty("signal.maxGreenMs", "6000"));
+        GAP_MS = Long.parseLong(System.getProperty("signal.gapMs", "1500"));
+        EPOCH = Long.parseLong(System.getProperty("signal.epoch", "0"));
+    }
+
     private final NodeEnum crossroad;
     private final LogicalClock clock = new LogicalClock();
     private final List<RoadEnum> roadsToCrossroad;
+    private final SnapshotAgent snapshotAgent;
+    private final TimingWheel timingWheel;
+    private final EventLoop loop;
+    private final TimerService timer;
+    private final EventLoop platoonLoop;
+    private final GreenWave greenWave;
+    private RoadCapacity capacity;
 
     /**
      * Constructs and starts the crossroad node runner for the provided node
@@ -25,6 +113,12 @@ public class Crossroad {
     private Crossroad(NodeEnum crossroad) {
         this.crossroad = crossroad;
         this.roadsToCrossroad = RoadEnum.getRoadsToCrossroad(crossroad);
+        this.snapshotAgent = new SnapshotAgent(crossroad, clock);
+        this.loop = LOOP_MODE ? new EventLoop(crossroad + "-loop") : null;
+        this.timingWheel = LOOP_MODE ? null : new TimingWheel();
+        this.timer = LOOP_MODE ? this.loop : this.timingWheel;
+        this.platoonLoop = LOOP_MODE ? null : new EventLoop(crossroad + "-platoons");
+        this.greenWave = SIGNAL_CONTROL == SignalControl.COORDINATED ? new GreenWave(PEDESTRIAN_GREEN_MS) : null;
         start();
     }
 
@@ -34,8 +128,20 @@ public class Crossroad {
      * If multiple incoming roads exist the crossroad starts a set of
      * traffic lights, pass-through handlers and a sorter. If only a single
      * incoming road exists a simpler single-signal configuration is used.
+     * The node's timer (timing wheel or event loop) is started first, with
+     * the loop closing the platoons of the lights in thread mode, then the
+     * road space of the outgoing roads.
      */
     private void start() {
+        if (LOOP_MODE) {
+            loop.start();
+        } else {
+            timingWheel.start();
+            platoonLoop.start();
+        }
+        if (RoadCapacity.ENABLED) {
+            capacity = new RoadCapacity(crossroad, clock, timer);
+        }
         if (roadsToCrossroad.size() >= 2) {
             startMultipleSignals();
         } else {
@@ -46,53 +152,249 @@ public class Crossroad {
     /**
      * Starts the crossroad in multi-signal mode.
      * <p>
-     * This method creates a {@link RoundRobin} coordinator, per-road
-     * synchronized queues for arriving and passed vehicles, and spawns
-     * {@link PassRoad} and {@link TrafficLight} threads for
-     * each incoming road. A single {@link Receiver} and
-     * {@link TrafficSorter} are also started to distribute arriving
-     * vehicles into the appropriate road queues.
+     * This method creates a {@link PhaseScheduler} with one phase per road,
+     * per-lane synchronized queues for arriving and passed vehicles, a
+     * {@link PassRoad} for each lane and a {@link TrafficLight} for each
+     * incoming road,
+     * a {@link TrafficSorter} to distribute arriving vehicles into the
+     * appropriate road queues and a single {@link Receiver}. In thread mode
+     * each component is started as a thread; in loop mode they are driven
+     * by the event loop.
      */
     private void startMultipleSignals() {
-        RoundRobin roundRobin = new RoundRobin(roadsToCrossroad.size());
-        Map<RoadEnum, SynchronizedQueue<Vehicle>> trafficQueues = new HashMap<>();
-        Map<RoadEnum, SynchronizedQueue<Vehicle>> passedQueues = new HashMap<>();
+        PhaseScheduler scheduler = new PhaseScheduler(roadsToCrossroad.size());
+        RoutingTable routingTable = DYNAMIC_ROUTING
+                ? new RoutingTable(crossroad, clock, timer, scheduler.getTotalPhases())
+                : null;
+        MaxPressureController pressure = null;
+        if (SIGNAL_CONTROL == SignalControl.MAX_PRESSURE) {
+            pressure = new MaxPressureController(crossroad, clock, timer);
+            scheduler.setSelector(pressure::selectPhase);
+        }
+        Map<RoadEnum, List<SynchronizedQueue<Vehicle>>> laneQueues = new HashMap<>();
+        SignalPhase[] phases = new SignalPhase[roadsToCrossroad.size()];
+        List<PassRoad> passRoads = new ArrayList<>();
+        List<Thread> components = new ArrayList<>();
 
         SynchronizedQueue<Vehicle> vehiclesToSort = new SynchronizedQueue<>();
 
-        for (RoadEnum road : roadsToCrossroad) {
-            SynchronizedQueue<Vehicle> vehicleQueue = new SynchronizedQueue<>();
-            SynchronizedQueue<Vehicle> passedQueue = new SynchronizedQueue<>();
-
-            trafficQueues.put(road, vehicleQueue);
-            passedQueues.put(road, passedQueue);
+        for (int phase = 0; phase < roadsToCrossroad.size(); phase++) {
+            RoadEnum road = roadsToCrossroad.get(phase);
+            List<SynchronizedQueue<Vehicle>> arriving = new ArrayList<>();
+            TrafficLight trafficLight = startLanes(road, scheduler, phase, routingTable, arriving, passRoads);
+            laneQueues.put(road, arriving);
 
-            PassRoad passRoad = new PassRoad(vehicleQueue, passedQueue, road, clock);
-            TrafficLight trafficLight = new TrafficLight(passedQueue, road, clock, roundRobin);
-            passRoad.start();
-            trafficLight.start();
+            IntSupplier load = () -> queued(arriving) + trafficLight.getQueued();
+            if (routingTable != null) {
+                routingTable.setLoad(road, load);
+            }
+            if (pressure != null) {
+                pressure.setQueue(road, load);
+            }
+            phases[phase] = trafficLight;
+            components.add(trafficLight);
         }
+        components.addAll(passRoads);
 
-        new Receiver(vehiclesToSort, crossroad, clock).start();
-        new TrafficSorter(trafficQueues, vehiclesToSort, crossroad).start();
+        TrafficSorter sorter = new TrafficSorter(laneQueues, vehiclesToSort, crossroad, snapshotAgent, routingTable);
+        Consumer<Event> onControl = controlListener(routingTable, pressure, capacity);
+        if (LOOP_MODE) {
+            Runnable onArrivals = () -> {
+                sorter.drain();
+                for (PassRoad passRoad : passRoads) {
+                    passRoad.drainArrivals();
+                }
+            };
+            new Receiver(vehiclesToSort, crossroad, clock, snapshotAgent, () -> loop.execute(onArrivals),
+                    onControl).start();
+            startPhaseCycle(scheduler, phases);
+        } else {
+            components.forEach(Thread::start);
+            new Receiver(vehiclesToSort, crossroad, clock, snapshotAgent, null, onControl).start();
+            sorter.start();
+        }
     }
 
     /**
      * Starts the crossroad in single-signal mode.
      * <p>
      * This sets up a minimal configuration for a crossroad with only one
-     * incoming road: a pass-through handler, a single traffic light, a
-     * pedestrian light and a receiver for arriving vehicles.
+     * incoming road: a pass-through handler per lane, a single traffic
+     * light, a pedestrian light (optionally on demand) and a receiver for
+     * arriving vehicles. A sorter is only added when the road has several
+     * lanes.
      */
     private void startSingleSignal() {
-        RoundRobin roundRobin = new RoundRobin(2);
-        SynchronizedQueue<Vehicle> arrivingQueue = new SynchronizedQueue<>();
-        SynchronizedQueue<Vehicle> passedQueue = new SynchronizedQueue<>();
-
-        new PassRoad(arrivingQueue, passedQueue, roadsToCrossroad.get(0), clock).start();
-        new TrafficLight(passedQueue, roadsToCrossroad.get(0), clock, roundRobin).start();
-        new PedestrianLight(roundRobin, 1).start();
-        new Receiver(arrivingQueue, crossroad, clock).start();
+        PhaseScheduler scheduler = new PhaseScheduler(2);
+        RoadEnum road = roadsToCrossroad.get(0);
+        RoutingTable routingTable = DYNAMIC_ROUTING
+                ? new RoutingTable(crossroad, clock, timer, scheduler.getTotalPhases())
+                : null;
+        List<SynchronizedQueue<Vehicle>> arriving = new ArrayList<>();
+        List<PassRoad> passRoads = new ArrayList<>();
+        TrafficLight trafficLight = startLanes(road, scheduler, 0, routingTable, arriving, passRoads);
+        if (routingTable != null) {
+            routingTable.setLoad(road, () -> queued(arriving) + trafficLight.getQueued());
+        }
+        PedestrianLight pedestrianLight = new PedestrianLight(scheduler, 1, PEDESTRIAN_GREEN_MS);
+        if (PEDESTRIAN_ON_DEMAND) {
+            scheduler.setDemand(1, pedestrianLight::hasCall);
+            pedestrianLight.simulateCalls(timer, PEDESTRIAN_CALL_RATE,
+                    RandomStreams.stream(NodeEnum.count() + crossroad.ordinal()));
+        }
+
+        SynchronizedQueue<Vehicle> received = arriving.get(0);
+        TrafficSorter sorter = null;
+        if (road.getLanes() > 1) {
+            received = new SynchronizedQueue<>();
+            sorter = new TrafficSorter(Collections.singletonMap(road, arriving), received, crossroad, snapshotAgent,
+                    routingTable);
+        }
+        Consumer<Event> onControl = controlListener(routingTable, null, capacity);
+        if (LOOP_MODE) {
+            TrafficSorter laneSorter = sorter;
+            Runnable onArrivals = () -> {
+                if (laneSorter != null)
+                    laneSorter.drain();
+                for (PassRoad passRoad : passRoads) {
+                    passRoad.drainArrivals();
+                }
+            };
+            new Receiver(received, crossroad, clock, snapshotAgent, () -> loop.execute(onArrivals),
+                    onControl).start();
+            startPhaseCycle(scheduler, new SignalPhase[] { trafficLight, pedestrianLight });
+        } else {
+            passRoads.forEach(Thread::start);
+            trafficLight.start();
+            pedestrianLight.start();
+            new Receiver(received, crossroad, clock, snapshotAgent, null, onControl).start();
+            if (sorter != null)
+                sorter.start();
+        }
+    }
+
+    /**
+     * Creates the lanes of an incoming road: for each lane a queue of
+     * arriving vehicles, a {@link PassRoad} and a queue at the signal, and
+     * the {@link TrafficLight} serving all of them. Components are not
+     * started.
+     *
+     * @param road         incoming road
+     * @param scheduler    phase scheduler of the crossroad
+     * @param phase        phase owned by the light
+     * @param routingTable routing table of the crossroad, or {@code null}
+     * @param arriving     list receiving the arriving queue of each lane
+     * @param passRoads    list receiving the pass-through handler of each lane
+     * @return the traffic light of the road
+     */
+    private TrafficLight startLanes(RoadEnum road, PhaseScheduler scheduler, int phase, RoutingTable routingTable,
+            List<SynchronizedQueue<Vehicle>> arriving, List<PassRoad> passRoads) {
+        List<SynchronizedQueue<Vehicle>> waiting = new ArrayList<>();
+        for (int lane = 0; lane < road.getLanes(); lane++) {
+            arriving.add(new SynchronizedQueue<>());
+            waiting.add(new SynchronizedQueue<>());
+        }
+        TrafficLight trafficLight = new TrafficLight(waiting, road, clock, scheduler, phase, snapshotAgent,
+                routingTable);
+        for (int lane = 0; lane < road.getLanes(); lane++) {
+            passRoads.add(new PassRoad(arriving.get(lane), waiting.get(lane), road, clock, timer, snapshotAgent,
+                    trafficLight::onVehicleReady, lane));
+        }
+        configureControl(scheduler, phase, trafficLight);
+        return trafficLight;
+    }
+
+    /**
+     * Counts the vehicles in a list of queues.
+     *
+     * @param queues queues to count
+     * @return total number of vehicles
+     */
+    private static int queued(List<SynchronizedQueue<Vehicle>> queues) {
+        int queued = 0;
+        for (SynchronizedQueue<Vehicle> queue : queues) {
+            queued += queue.size();
+        }
+        return queued;
+    }
+
+    /**
+     * Builds the listener for the control messages received from the
+     * neighbouring crossroads.
+     *
+     * @param routingTable routing table of the crossroad, or {@code null}
+     * @param pressure     max-pressure controller, or {@code null}
+     * @param capacity     road space of the outgoing roads, or {@code null}
+     * @return the listener, or {@code null} if none of them is in use
+     */
+    private static Consumer<Event> controlListener(RoutingTable routingTable,
+            MaxPressureController pressure, RoadCapacity capacity) {
+        if (routingTable == null && pressure == null && capacity == null)
+            return null;
+        return message -> {
+            if (message instanceof RouteAdvertisement && routingTable != null) {
+                routingTable.onAdvertisement((RouteAdvertisement) message);
+            } else if (message instanceof QueueGossip && pressure != null) {
+                pressure.onGossip((QueueGossip) message);
+            } else if (message instanceof RoadCredit && capacity != null) {
+                capacity.onCredit((RoadCredit) message);
+            }
+        };
+    }
+
+    /**
+     * Applies the configured signal control to the phase of a traffic light:
+     * actuated timing or, for the coordinated road, the green-wave timing,
+     * and skipping the phase while no vehicle waits at the light (with
+     * actuated control or {@code signal.skipEmpty}). Also limits the light
+     * to the room on the outgoing roads and gives it a timer for its platoon
+     * windows: the event loop in loop mode, otherwise the crossroad's platoon
+     * loop, since closing a platoon sends it and must not hold up the shared
+     * timing wheel.
+     *
+     * @param scheduler    phase scheduler of the crossroad
+     * @param phase        phase owned by the light
+     * @param trafficLight the light
+     */
+    private void configureControl(PhaseScheduler scheduler, int phase, TrafficLight trafficLight) {
+        trafficLight.setTimer(LOOP_MODE ? loop : platoonLoop);
+        if (capacity != null) {
+            trafficLight.setCapacity(capacity);
+        }
+        if (SIGNAL_CONTROL == SignalControl.ACTUATED) {
+            trafficLight.setTiming(new ActuatedController(MIN_GREEN_MS, MAX_GREEN_MS, GAP_MS));
+        }
+        if (greenWave != null && greenWave.getCoordinatedRoad(crossroad) == roadsToCrossroad.get(phase)) {
+            trafficLight.setTiming(greenWave.timingFor(crossroad, EPOCH));
+            System.out.println("Coordinated " + roadsToCrossroad.get(phase) + ": cycle " + greenWave.getCycle()
+                    + " ms, offset " + greenWave.getOffset(crossroad) + " ms");
+        }
+        if (SKIP_EMPTY_PHASES || SIGNAL_CONTROL == SignalControl.ACTUATED) {
+            scheduler.setDemand(phase, () -> trafficLight.getQueued() > 0);
+        }
+    }
+
+    /**
+     * Drives the signal phases from the event loop (loop mode): each phase
+     * owner runs its phase on the loop and, when it ends, the scheduler
+     * grants the next phase.
+     *
+     * @param scheduler phase scheduler of the crossroad
+     * @param phases    owner of each phase, indexed by phase
+     */
+    private void startPhaseCycle(PhaseScheduler scheduler, SignalPhase[] phases) {
+        Runnable next = new Runnable() {
+            @Override
+            public void run() {
+                int phase = scheduler.release();
+                scheduler.tryAwaitPhase(phase);
+                phases[phase].runPhase(loop, this);
+            }
+        };
+        loop.execute(() -> {
+            scheduler.tryAwaitPhase(0);
+            phases[0].runPhase(loop, next);
+        });
     }
 
     /**
@@ -2,30 +2,60 @@ package Node;
 
 import Comunication.*;
 import Event.*;
+import Traffic.RoadCapacity;
 import Traffic.RoadEnum;
 import Utils.*;
 import Vehicle.*;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 /**
  * Entrance node responsible for periodically generating vehicles and
  * sending creation/departure events to the rest of the system.
  * <p>
- * The entrance simulates vehicle arrivals using an exponential inter-arrival
- * distribution. Each generated {@link Vehicle} is assigned a random
- * {@link VehicleType} and a route selected from the {@link PathEnum} options
- * for this entrance. Created vehicles are reported to the event handler and
- * their departure is sent to the destination crossroad over the network.
+ * The entrance simulates vehicle arrivals following its
+ * {@link ArrivalProfile}: by default a constant rate of
+ * {@code simulation.lambda} vehicles per second (exponential inter-arrival
+ * times), or a rush-hour rate curve or a recorded trace. Each generated {@link Vehicle} is assigned a
+ * {@link VehicleType} drawn from the traffic mix and a route drawn from the
+ * {@link PathEnum} options for this entrance by their weights, both with
+ * alias tables built once. Vehicles are generated in batches of
+ * {@code simulation.generationBatch} (default 64) together with their
+ * arrival times, and released on an absolute schedule so the time
+ * spent sending does not stretch the intervals. Created vehicles are
+ * reported to the event handler and their departure is sent to the
+ * destination crossroad over the network.
+ * <p>
+ * Every random draw of an entrance comes from its own stream of
+ * {@link RandomStreams}, so with {@code simulation.seed} an entrance
+ * generates the same vehicles, types, paths and arrival times in every run.
+ * With {@code simulation.vehicles} each entrance generates that many
+ * vehicles and then stops, giving runs a fixed workload.
+ * <p>
+ * With road capacity on, a generated vehicle waits at the entrance until
+ * the road into the network has room for it, and no further vehicle is
+ * released meanwhile: demand beyond what the network takes in is
+ * postponed rather than queued without bound.
  */
 public class Entrance {
     private static double LAMBDA = 0.3;
-    private static final Random RND = new Random();
+    private static final int BATCH_SIZE;
+    private static final int VEHICLE_BUDGET;
+    private final SplittableRandom rnd;
     private final NodeEnum entrance;
     private final LogicalClock clock = new LogicalClock();
+    private final TimingWheel timer = new TimingWheel();
+    private final RoadEnum road;
     private final int destPort;
-    private final List<PathEnum> possiblePaths;
-    private final int probabilitySum;
+    private final AliasTable<PathEnum> paths;
+    private final ArrivalProfile arrivals;
+    private final String idPrefix;
+    private final SnapshotAgent snapshotAgent;
+    private final Vehicle[] batch = new Vehicle[BATCH_SIZE];
+    private final long[] gaps = new long[BATCH_SIZE];
+    private int batchLength = BATCH_SIZE;
+    private int nextInBatch = BATCH_SIZE;
+    private double lastArrival = 0.0;
     private int counter = 0;
 
     /**
@@ -36,9 +66,13 @@ public class Entrance {
      */
     private Entrance(NodeEnum entrance) {
         this.entrance = entrance;
-        this.possiblePaths = PathEnum.getPathsFromEntrance(entrance);
-        this.probabilitySum = getProbabilitySum();
-        this.destPort = RoadEnum.getRoadsFromCrossroad(entrance).get(0).getDestination().getPort();
+        this.rnd = RandomStreams.stream(entrance.ordinal());
+        this.paths = pathTable(PathEnum.getPathsFromEntrance(entrance));
+        this.idPrefix = entrance + "-V";
+        this.arrivals = ArrivalProfile.forEntrance(entrance, LAMBDA);
+        this.road = RoadEnum.getRoadsFromCrossroad(entrance).get(0);
+        this.destPort = this.road.getDestination().getPort();
+        this.snapshotAgent = new SnapshotAgent(entrance, clock);
         start();
     }
 
@@ -51,80 +85,102 @@ public class Entrance {
             }
         } catch (Exception ignored) {
         }
+        BATCH_SIZE = Math.max(1, Integer.parseInt(System.getProperty("simulation.generationBatch", "64")));
+        VEHICLE_BUDGET = Integer.parseInt(System.getProperty("simulation.vehicles", "0"));
     }
 
     /**
-     * Starts the vehicle generation loop: creates vehicles, sends events and
-     * waits the exponential interval between generations.
+     * Starts the vehicle generation loop: takes the next vehicle of the
+     * batch, waits for its arrival time and for room on the road, then sends
+     * its events. A vehicle kept waiting for room postpones the schedule of
+     * the following ones. Generation ends when the arrival profile has no
+     * more arrivals. A {@link Receiver} without a vehicle queue lets the
+     * entrance take part in snapshots and receive the road space handed
+     * back by the crossroad.
      */
     private void start() {
+        timer.start();
+        RoadCapacity capacity = RoadCapacity.ENABLED ? new RoadCapacity(entrance, clock, timer) : null;
+        new Receiver(null, entrance, clock, snapshotAgent, null, message -> {
+            if (message instanceof RoadCredit && capacity != null)
+                capacity.onCredit((RoadCredit) message);
+        }).start();
+        long due = System.currentTimeMillis();
         while (true) {
-            Vehicle v = generateVehicle();
-            System.out.println("[Entrance] Vehicle created: " + v.getId() +
-                    " Type: " + v.getType() + " Path: " + v.getPath());
-
-            Sender.sendToEventHandler(new VehicleEvent(EventType.NEW_VEHICLE, entrance, clock.tick(), v));
-            Sender.sendVehicleDeparture(v, destPort, entrance, clock);
-            ;
+            if (this.nextInBatch == this.batchLength) {
+                generateBatch();
+                if (this.batchLength == 0) {
+                    System.out.println("[Entrance] " + entrance + ": no more arrivals");
+                    return;
+                }
+            }
+            Vehicle v = this.batch[this.nextInBatch];
+            long gap = this.gaps[this.nextInBatch];
+            this.batch[this.nextInBatch++] = null;
             try {
-                Thread.sleep(getExponentialInterval());
+                due += gap;
+                long wait = due - System.currentTimeMillis();
+                if (wait > 0)
+                    Thread.sleep(wait);
+                if (capacity != null && !capacity.tryAcquire(road, v)) {
+                    capacity.acquire(road, v);
+                    due = System.currentTimeMillis();
+                }
             } catch (InterruptedException e) {
-                e.printStackTrace();
+                Thread.currentThread().interrupt();
+                return;
             }
-        }
-    }
-
-    /**
-     * Sums the selection weights of the possible paths for this entrance.
-     *
-     * @return sum of probability/weight values
-     */
-    private int getProbabilitySum() {
-        int sum = 0;
-        for (PathEnum path : this.possiblePaths) {
-            sum += path.getProbToBeSelected();
-        }
-        return sum;
-    }
+            snapshotAgent.beginTransfer();
+            try {
+                System.out.println("[Entrance] Vehicle created: " + v.getId() +
+                        " Type: " + v.getType() + " Path: " + v.getPath());
 
-    /**
-     * Selects a path randomly based on weights/probabilities.
-     *
-     * @return selected path
-     */
-    private PathEnum selectPath() {
-        int value = RND.nextInt(this.probabilitySum);
-        int cummulativeProb = 0;
-        for (PathEnum path : this.possiblePaths) {
-            cummulativeProb += path.getProbToBeSelected();
-            if (value < cummulativeProb) {
-                return path;
+                Sender.sendToEventHandler(new VehicleEvent(EventType.NEW_VEHICLE, entrance, clock.tick(), v));
+                v.recordHop(entrance);
+                Sender.sendVehicleDeparture(v, destPort, entrance, clock);
+            } finally {
+                snapshotAgent.endTransfer();
             }
         }
-        return this.possiblePaths.get(0);
     }
 
     /**
-     * Generates a new vehicle with randomly selected type and path.
+     * Builds the alias table choosing among the paths of this entrance by
+     * their selection weights.
      *
-     * @return new {@link Vehicle}
+     * @param possiblePaths paths starting at this entrance
+     * @return path table
      */
-    private Vehicle generateVehicle() {
-        VehicleType type = VehicleType.values()[RND.nextInt(VehicleType.values().length)];
-        PathEnum selectedPath = selectPath();
-        return new Vehicle(entrance + "-V" + this.counter++, type, selectedPath);
+    private static AliasTable<PathEnum> pathTable(List<PathEnum> possiblePaths) {
+        double[] weights = new double[possiblePaths.size()];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = possiblePaths.get(i).getProbToBeSelected();
+        }
+        return new AliasTable<>(possiblePaths, weights);
     }
 
     /**
-     * Computes an exponential interval (in ms) used to space vehicle
-     * generation.
-     *
-     * @return interval in milliseconds
+     * Fills the batch with new vehicles, each with a type and path drawn
+     * from the alias tables and the interval in ms since the previous
+     * arrival, taken from the arrival profile. The batch is shorter, or
+     * empty, once the profile has no more arrivals or the vehicle budget is
+     * used up.
      */
-    private long getExponentialInterval() {
-        double u = RND.nextDouble();
-        double interval = -Math.log(1 - u) / LAMBDA;
-        return (long) (interval * 1000);
+    private void generateBatch() {
+        int n = 0;
+        while (n < BATCH_SIZE && (VEHICLE_BUDGET <= 0 || this.counter < VEHICLE_BUDGET)) {
+            double arrival = this.arrivals.next(this.lastArrival, this.rnd);
+            if (arrival == Double.POSITIVE_INFINITY)
+                break;
+            VehicleType type = VehicleType.sample(this.rnd.nextDouble());
+            PathEnum path = this.paths.sample(this.rnd.nextDouble());
+            this.batch[n] = new Vehicle(this.idPrefix + this.counter++, type, path);
+            this.gaps[n] = Math.round(arrival * 1000) - Math.round(this.lastArrival * 1000);
+            this.lastArrival = arrival;
+            n++;
+        }
+        this.batchLength = n;
+        this.nextInBatch = 0;
     }
 
     /**
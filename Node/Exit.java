@@ -23,10 +23,12 @@ import Vehicle.Vehicle;
 public class Exit {
     private final NodeEnum exit;
     private final LogicalClock clock = new LogicalClock();
+    private final TimingWheel timer = new TimingWheel();
     private final List<RoadEnum> roadsToExit;
     private final Map<RoadEnum, SynchronizedQueue<Vehicle>> trafficQueues = new HashMap<>();
     private final SynchronizedQueue<Vehicle> incommingQueue = new SynchronizedQueue<>();
     private final SynchronizedQueue<Vehicle> passedQueue = new SynchronizedQueue<>();
+    private final SnapshotAgent snapshotAgent;
 
     /**
      * Constructs and starts the exit node runner for the provided node
@@ -37,6 +39,7 @@ public class Exit {
     private Exit(NodeEnum exit) {
         this.exit = exit;
         this.roadsToExit = RoadEnum.getRoadsToCrossroad(exit);
+        this.snapshotAgent = new SnapshotAgent(exit, clock);
         start();
     }
 
@@ -47,19 +50,34 @@ public class Exit {
      * each one.
      */
     private void start() {
+        this.timer.start();
         for (RoadEnum road : this.roadsToExit) {
             SynchronizedQueue<Vehicle> trafficQueue = new SynchronizedQueue<>();
-            PassRoad passRoad = new PassRoad(trafficQueue, this.passedQueue, road, this.clock);
+            PassRoad passRoad = new PassRoad(trafficQueue, this.passedQueue, road, this.clock, this.timer,
+                    this.snapshotAgent);
             this.trafficQueues.put(road, trafficQueue);
             passRoad.start();
         }
+        this.snapshotAgent.register(this.exit + " exiting", null, this.passedQueue::size);
 
-        new Receiver(this.incommingQueue, this.exit, this.clock).start();
-        new TrafficSorter(this.trafficQueues, this.incommingQueue, this.exit).start();
+        new Receiver(this.incommingQueue, this.exit, this.clock, this.snapshotAgent).start();
+        new TrafficSorter(this.trafficQueues, this.incommingQueue, this.exit, this.snapshotAgent).start();
 
         while (true) {
-            Vehicle vehicle = this.passedQueue.remove();
-            Sender.sendToEventHandler(new VehicleEvent(EventType.VEHICLE_EXIT, this.exit, this.clock.tick(), vehicle));
+            try {
+                this.passedQueue.awaitNonEmpty();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            this.snapshotAgent.beginTransfer();
+            try {
+                Vehicle vehicle = this.passedQueue.poll();
+                Sender.sendToEventHandler(
+                        new VehicleEvent(EventType.VEHICLE_EXIT, this.exit, this.clock.tick(), vehicle));
+            } finally {
+                this.snapshotAgent.endTransfer();
+            }
         }
     }
 
@@ -1,50 +1,114 @@
 package Node;
 
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
- * Enumeration representing all nodes available in the system.
+ * All nodes available in the system, as loaded from the {@link Topology}.
  * Each node has a name and an associated communication port.
+ * <p>
+ * Nodes behave like enum constants: there is exactly one instance per node
+ * in each process (deserialized nodes resolve to it), so they can be
+ * compared with {@code ==}, and each node has a dense {@link #ordinal()}
+ * for use as an array index.
  */
-public enum NodeEnum {
-    E1(NodeType.ENTRANCE, 5001),
-    E2(NodeType.ENTRANCE, 5002),
-    E3(NodeType.ENTRANCE, 5003),
-    CR1(NodeType.CROSSROAD, 6001),
-    CR2(NodeType.CROSSROAD, 6002),
-    CR3(NodeType.CROSSROAD, 6003),
-    CR4(NodeType.CROSSROAD, 6004),
-    CR5(NodeType.CROSSROAD, 6005),
-    S(NodeType.EXIT, 7001);
+public final class NodeEnum implements Serializable, Comparable<NodeEnum> {
+    private static final long serialVersionUID = 1L;
 
+    private static final NodeEnum[] VALUES;
+    private static final Map<String, NodeEnum> BY_NAME = new HashMap<>();
+    private static final List<NodeEnum> ENTRANCES;
+
+    static {
+        List<Topology.NodeSpec> specs = Topology.get().getNodes();
+        VALUES = new NodeEnum[specs.size()];
+        List<NodeEnum> entrances = new ArrayList<>();
+        for (int i = 0; i < specs.size(); i++) {
+            Topology.NodeSpec s = specs.get(i);
+            NodeEnum node = new NodeEnum(s.name, i, s.type, s.port, s.x, s.y);
+            VALUES[i] = node;
+            BY_NAME.put(s.name, node);
+            if (s.type == NodeType.ENTRANCE)
+                entrances.add(node);
+        }
+        ENTRANCES = Collections.unmodifiableList(entrances);
+    }
+
+    private final String name;
+    private final int ordinal;
     private final NodeType type;
     private final int port;
+    private final double x;
+    private final double y;
 
     /**
-     * Create a node enumeration value.
+     * Create a node.
      *
-     * @param type the {@link NodeType} for this node
-     * @param port the TCP port used by the node for inter-process communication
+     * @param name    node name
+     * @param ordinal index of the node in {@link #values()}
+     * @param type    the {@link NodeType} for this node
+     * @param port    the TCP port used by the node for inter-process
+     *                communication
+     * @param x       map column, or NaN if not given
+     * @param y       map row, or NaN if not given
      */
-    NodeEnum(NodeType type, int port) {
+    private NodeEnum(String name, int ordinal, NodeType type, int port, double x, double y) {
+        this.name = name;
+        this.ordinal = ordinal;
         this.type = type;
         this.port = port;
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     * Returns every node, in topology order.
+     *
+     * @return new array with all nodes
+     */
+    public static NodeEnum[] values() {
+        return VALUES.clone();
+    }
+
+    /**
+     * Returns the number of nodes.
+     *
+     * @return node count
+     */
+    public static int count() {
+        return VALUES.length;
     }
 
     /**
      * Converts a string identifier to the corresponding {@link NodeEnum}.
      *
-     * @param nodeString the enum name (for example "E1", "CR1", "S")
+     * @param nodeString the node name (for example "E1", "CR1", "S")
      * @return the matching {@link NodeEnum} or {@code null} if not found
      */
     public static NodeEnum toNodeEnum(String nodeString) {
-        for (NodeEnum node : values()) {
-            if (node.name().equals(nodeString)) {
-                return node;
-            }
-        }
-        return null;
+        return nodeString == null ? null : BY_NAME.get(nodeString);
+    }
+
+    /**
+     * Returns the node name.
+     *
+     * @return node name
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Returns the index of the node in {@link #values()}.
+     *
+     * @return node ordinal
+     */
+    public int ordinal() {
+        return ordinal;
     }
 
     /**
@@ -65,23 +129,63 @@ public enum NodeEnum {
         return type;
     }
 
+    /**
+     * Returns whether the topology places this node on the map.
+     *
+     * @return {@code true} if {@link #getX()} and {@link #getY()} are set
+     */
+    public boolean hasPosition() {
+        return !Double.isNaN(x) && !Double.isNaN(y);
+    }
+
+    /**
+     * Returns the map column of the node.
+     *
+     * @return column, or NaN if not given
+     */
+    public double getX() {
+        return x;
+    }
+
+    /**
+     * Returns the map row of the node.
+     *
+     * @return row, or NaN if not given
+     */
+    public double getY() {
+        return y;
+    }
+
     /**
      * Returns the list of nodes that are entrances in the system.
      *
-     * @return list of {@link NodeEnum} of type ENTRANCE
+     * @return unmodifiable list of {@link NodeEnum} of type ENTRANCE
      */
     public static List<NodeEnum> getEntrances() {
-        List<NodeEnum> entrances = new ArrayList<>();
-        for (NodeEnum node : values()) {
-            if (node.getType() == NodeType.ENTRANCE) {
-                entrances.add(node);
-            }
-        }
-        return entrances;
+        return ENTRANCES;
+    }
+
+    @Override
+    public int compareTo(NodeEnum o) {
+        return Integer.compare(ordinal, o.ordinal);
+    }
+
+    /**
+     * Resolve a deserialized node to the instance of this process.
+     *
+     * @return the canonical node
+     * @throws java.io.InvalidObjectException if the node is not in the
+     *                                        topology
+     */
+    private Object readResolve() throws java.io.InvalidObjectException {
+        NodeEnum node = BY_NAME.get(name);
+        if (node == null)
+            throw new java.io.InvalidObjectException("Unknown node " + name);
+        return node;
     }
 
     @Override
     public String toString() {
-        return this.name();
+        return this.name;
     }
-}
\ No newline at end of file
+}
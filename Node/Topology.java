@@ -0,0 +1,332 @@
+package Node;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Road network description loaded from a text file.
+ * <p>
+ * The file lists the nodes, roads and vehicle paths of the simulation, one
+ * per line ({@code #} starts a comment):
+ *
+ * <pre>
+ * node &lt;name&gt; &lt;ENTRANCE|CROSSROAD|EXIT&gt; &lt;port&gt; [&lt;column&gt; &lt;row&gt;]
+ * road &lt;origin&gt; &lt;destination&gt; &lt;travel time ms&gt; [&lt;green light ms&gt; [&lt;lanes&gt;]]
+ * path &lt;weight&gt; &lt;node&gt; &lt;node&gt; ...
+ * </pre>
+ *
+ * The network is read once per process, from the file named by the
+ * {@code simulation.topology} system property or from
+ * {@value #DEFAULT_FILE}; a {@link TopologyGenerator} specification such as
+ * {@code grid:20x20} may be given instead of a file. {@link NodeEnum}, {@link Traffic.RoadEnum} and
+ * {@link Vehicle.PathEnum} build their indexed tables from it.
+ */
+public final class Topology {
+    public static final String DEFAULT_FILE = "network/default.net";
+
+    private static Topology instance;
+
+    private final String source;
+    private final List<NodeSpec> nodes = new ArrayList<>();
+    private final List<RoadSpec> roads = new ArrayList<>();
+    private final List<PathSpec> paths = new ArrayList<>();
+
+    /**
+     * Create an empty topology.
+     *
+     * @param source name of the file the topology is read from
+     */
+    private Topology(String source) {
+        this.source = source;
+    }
+
+    /**
+     * Returns the topology of this process, loading it on first use.
+     *
+     * @return the loaded topology
+     * @throws IllegalStateException if the network file cannot be read or is
+     *                               invalid
+     */
+    public static synchronized Topology get() {
+        if (instance == null) {
+            String location = System.getProperty("simulation.topology", DEFAULT_FILE);
+            try {
+                Topology generated = TopologyGenerator.fromSpec(location);
+                instance = generated != null ? generated : load(location);
+            } catch (IOException | IllegalArgumentException e) {
+                throw new IllegalStateException("Cannot load topology " + location + ": " + e.getMessage(), e);
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Load a topology from a file, or from a classpath resource of the same
+     * name if no such file exists.
+     *
+     * @param location file path or resource name
+     * @return the parsed topology
+     * @throws IOException              if the file cannot be read
+     * @throws IllegalArgumentException if the file is invalid
+     */
+    public static Topology load(String location) throws IOException {
+        File file = new File(location);
+        InputStream in = file.isFile()
+                ? new FileInputStream(file)
+                : Topology.class.getClassLoader().getResourceAsStream(location);
+        if (in == null)
+            throw new FileNotFoundException(location);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            return parse(reader, location);
+        }
+    }
+
+    /**
+     * Parse a topology.
+     *
+     * @param reader reader positioned at the start of the file
+     * @param source name used in error messages
+     * @return the parsed topology
+     * @throws IOException              if reading fails
+     * @throws IllegalArgumentException if a line is invalid
+     */
+    public static Topology parse(BufferedReader reader, String source) throws IOException {
+        Topology t = new Topology(source);
+        Map<String, NodeSpec> nodesByName = new HashMap<>();
+        Set<Integer> ports = new HashSet<>();
+        Set<String> roadNames = new HashSet<>();
+        String line;
+        int lineNo = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNo++;
+            int hash = line.indexOf('#');
+            if (hash >= 0)
+                line = line.substring(0, hash);
+            line = line.trim();
+            if (line.isEmpty())
+                continue;
+            String[] f = line.split("\\s+");
+            try {
+                switch (f[0]) {
+                    case "node":
+                        t.parseNode(f, nodesByName, ports);
+                        break;
+                    case "road":
+                        t.parseRoad(f, nodesByName, roadNames);
+                        break;
+                    case "path":
+                        t.parsePath(f, nodesByName, roadNames);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown directive '" + f[0] + "'");
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(source + ":" + lineNo + ": invalid number (" + e.getMessage() + ")");
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(source + ":" + lineNo + ": " + e.getMessage());
+            }
+        }
+        if (t.nodes.isEmpty())
+            throw new IllegalArgumentException(source + ": no nodes defined");
+        return t;
+    }
+
+    /**
+     * Parse a {@code node} line.
+     *
+     * @param f           fields of the line
+     * @param nodesByName nodes read so far, by name
+     * @param ports       ports used so far
+     */
+    private void parseNode(String[] f, Map<String, NodeSpec> nodesByName, Set<Integer> ports) {
+        if (f.length != 4 && f.length != 6)
+            throw new IllegalArgumentException("expected: node <name> <type> <port> [<column> <row>]");
+        if (nodesByName.containsKey(f[1]))
+            throw new IllegalArgumentException("duplicate node " + f[1]);
+        NodeType type;
+        try {
+            type = NodeType.valueOf(f[2]);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("unknown node type " + f[2]);
+        }
+        double x = f.length == 6 ? Double.parseDouble(f[4]) : Double.NaN;
+        double y = f.length == 6 ? Double.parseDouble(f[5]) : Double.NaN;
+        NodeSpec spec = new NodeSpec(f[1], type, Integer.parseInt(f[3]), x, y);
+        if (!ports.add(spec.port))
+            throw new IllegalArgumentException("port " + spec.port + " already used");
+        nodesByName.put(spec.name, spec);
+        nodes.add(spec);
+    }
+
+    /**
+     * Parse a {@code road} line.
+     *
+     * @param f           fields of the line
+     * @param nodesByName nodes read so far, by name
+     * @param roadNames   names of the roads read so far
+     */
+    private void parseRoad(String[] f, Map<String, NodeSpec> nodesByName, Set<String> roadNames) {
+        if (f.length < 4 || f.length > 6)
+            throw new IllegalArgumentException(
+                    "expected: road <origin> <destination> <travel ms> [<green ms> [<lanes>]]");
+        requireNode(f[1], nodesByName);
+        requireNode(f[2], nodesByName);
+        if (!roadNames.add(f[1] + "_" + f[2]))
+            throw new IllegalArgumentException("duplicate road " + f[1] + " -> " + f[2]);
+        int green = f.length >= 5 ? Integer.parseInt(f[4]) : 0;
+        int lanes = f.length == 6 ? Integer.parseInt(f[5]) : 1;
+        if (lanes < 1)
+            throw new IllegalArgumentException("road needs at least one lane");
+        roads.add(new RoadSpec(f[1], f[2], Integer.parseInt(f[3]), green, lanes));
+    }
+
+    /**
+     * Parse a {@code path} line.
+     *
+     * @param f           fields of the line
+     * @param nodesByName nodes read so far, by name
+     * @param roadNames   names of the roads read so far
+     */
+    private void parsePath(String[] f, Map<String, NodeSpec> nodesByName, Set<String> roadNames) {
+        if (f.length < 4)
+            throw new IllegalArgumentException("expected: path <weight> <node> <node> ...");
+        List<String> pathNodes = new ArrayList<>(Arrays.asList(f).subList(2, f.length));
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < pathNodes.size(); i++) {
+            String n = pathNodes.get(i);
+            requireNode(n, nodesByName);
+            if (!seen.add(n))
+                throw new IllegalArgumentException("path visits " + n + " twice");
+            if (i > 0 && !roadNames.contains(pathNodes.get(i - 1) + "_" + n))
+                throw new IllegalArgumentException("no road " + pathNodes.get(i - 1) + " -> " + n);
+        }
+        if (nodesByName.get(pathNodes.get(0)).type != NodeType.ENTRANCE)
+            throw new IllegalArgumentException("path must start at an entrance");
+        if (nodesByName.get(pathNodes.get(pathNodes.size() - 1)).type != NodeType.EXIT)
+            throw new IllegalArgumentException("path must end at an exit");
+        paths.add(new PathSpec(Integer.parseInt(f[1]), Collections.unmodifiableList(pathNodes)));
+    }
+
+    /**
+     * Check that a node was declared.
+     *
+     * @param name        node name
+     * @param nodesByName nodes read so far, by name
+     */
+    private static void requireNode(String name, Map<String, NodeSpec> nodesByName) {
+        if (!nodesByName.containsKey(name))
+            throw new IllegalArgumentException("unknown node " + name);
+    }
+
+    /**
+     * Returns the name of the file the topology was read from.
+     *
+     * @return file name
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Returns the nodes, in file order.
+     *
+     * @return unmodifiable list of nodes
+     */
+    public List<NodeSpec> getNodes() {
+        return Collections.unmodifiableList(nodes);
+    }
+
+    /**
+     * Returns the roads, in file order.
+     *
+     * @return unmodifiable list of roads
+     */
+    public List<RoadSpec> getRoads() {
+        return Collections.unmodifiableList(roads);
+    }
+
+    /**
+     * Returns the paths, in file order.
+     *
+     * @return unmodifiable list of paths
+     */
+    public List<PathSpec> getPaths() {
+        return Collections.unmodifiableList(paths);
+    }
+
+    /**
+     * A {@code node} line.
+     */
+    public static final class NodeSpec {
+        public final String name;
+        public final NodeType type;
+        public final int port;
+        public final double x;
+        public final double y;
+
+        /**
+         * Create a node description.
+         *
+         * @param name node name
+         * @param type node type
+         * @param port TCP port of the node
+         * @param x    map column, or NaN if not given
+         * @param y    map row, or NaN if not given
+         */
+        NodeSpec(String name, NodeType type, int port, double x, double y) {
+            this.name = name;
+            this.type = type;
+            this.port = port;
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    /**
+     * A {@code road} line.
+     */
+    public static final class RoadSpec {
+        public final String origin;
+        public final String destination;
+        public final int travelTime;
+        public final int greenLightDuration;
+        public final int lanes;
+
+        /**
+         * Create a road description.
+         *
+         * @param origin             origin node name
+         * @param destination        destination node name
+         * @param travelTime         base travel time in ms
+         * @param greenLightDuration green light duration in ms
+         * @param lanes              number of lanes
+         */
+        RoadSpec(String origin, String destination, int travelTime, int greenLightDuration, int lanes) {
+            this.origin = origin;
+            this.destination = destination;
+            this.travelTime = travelTime;
+            this.greenLightDuration = greenLightDuration;
+            this.lanes = lanes;
+        }
+    }
+
+    /**
+     * A {@code path} line.
+     */
+    public static final class PathSpec {
+        public final int weight;
+        public final List<String> nodes;
+
+        /**
+         * Create a path description.
+         *
+         * @param weight relative selection weight
+         * @param nodes  node names, in order
+         */
+        PathSpec(int weight, List<String> nodes) {
+            this.weight = weight;
+            this.nodes = nodes;
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package Node;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Generator of synthetic road networks for scale testing, written in the
+ * network file format read by {@link Topology}.
+ * <p>
+ * Two layouts are available:
+ * <ul>
+ * <li><b>grid</b> &ndash; {@code cols x rows} crossroads joined by one-way
+ * southbound and eastbound streets. Every column has an entrance on the
+ * north edge and an exit on the south edge; every row has an entrance on
+ * the west edge and an exit on the east edge. Vehicles either go straight
+ * across or make one turn, so every route runs south/east and no route
+ * visits a crossroad twice.</li>
+ * <li><b>arterial</b> &ndash; {@code length} crossroads on an eastbound main
+ * road, each with a southbound side street. Main-road vehicles go through
+ * or turn off into a side street; side-street vehicles cross, or join the
+ * main road and leave at a later side street or at its east end. Main-road
+ * signals get a longer green than side streets.</li>
+ * </ul>
+ * The generated files are deterministic, so every node process builds the
+ * same network. {@link Topology#get()} accepts {@code grid:<cols>x<rows>}
+ * and {@code arterial:<length>} in place of a file name, e.g.
+ * {@code -Dsimulation.topology=grid:20x20}; the generator can also write a
+ * file to edit by hand:
+ *
+ * <pre>
+ * java Node.TopologyGenerator grid 20 20 network/grid20x20.net
+ * java Node.TopologyGenerator arterial 12 network/arterial12.net
+ * </pre>
+ */
+public final class TopologyGenerator {
+    private static final int ENTRANCE_PORT_BASE = 10000;
+    private static final int CROSSROAD_PORT_BASE = 20000;
+    private static final int EXIT_PORT_BASE = 50000;
+    private static final int MAX_CROSSROADS = EXIT_PORT_BASE - CROSSROAD_PORT_BASE - 1;
+    private static final int MAX_EDGE_NODES = 65535 - EXIT_PORT_BASE;
+
+    private static final int ENTRANCE_TRAVEL_MS = 1000;
+    private static final int STREET_TRAVEL_MS = 1500;
+    private static final int EXIT_TRAVEL_MS = 2000;
+    private static final int STREET_GREEN_MS = 3000;
+    private static final int ARTERIAL_GREEN_MS = 6000;
+    private static final int SIDE_GREEN_MS = 2000;
+
+    private TopologyGenerator() {
+    }
+
+    /**
+     * Build a topology from a generator specification.
+     *
+     * @param spec {@code grid:<cols>x<rows>} or {@code arterial:<length>}
+     * @return the generated topology, or {@code null} if {@code spec} is not
+     *         a generator specification
+     * @throws IllegalArgumentException if the specification is malformed
+     */
+    static Topology fromSpec(String spec) {
+        String text;
+        if (spec.startsWith("grid:")) {
+            String[] size = spec.substring(5).split("x");
+            if (size.length != 2)
+                throw new IllegalArgumentException("expected grid:<cols>x<rows>");
+            text = grid(Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+        } else if (spec.startsWith("arterial:")) {
+            text = arterial(Integer.parseInt(spec.substring(9)));
+        } else {
+            return null;
+        }
+        try {
+            return Topology.parse(new BufferedReader(new StringReader(text)), spec);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Generate a one-way grid network.
+     *
+     * @param cols number of crossroad columns (west to east)
+     * @param rows number of crossroad rows (north to south)
+     * @return network file contents
+     * @throws IllegalArgumentException if the grid is empty or too large
+     */
+    public static String grid(int cols, int rows) {
+        if (cols < 1 || rows < 1)
+            throw new IllegalArgumentException("grid size must be at least 1x1");
+        checkSize((long) cols * rows, cols + rows);
+
+        StringBuilder out = new StringBuilder();
+        out.append("# Generated ").append(cols).append("x").append(rows).append(" one-way grid\n\n");
+
+        for (int c = 0; c < cols; c++)
+            node(out, "EN" + c, NodeType.ENTRANCE, ENTRANCE_PORT_BASE + 1 + c, c + 1, 0);
+        for (int r = 0; r < rows; r++)
+            node(out, "EW" + r, NodeType.ENTRANCE, ENTRANCE_PORT_BASE + 1 + cols + r, 0, r + 1);
+        for (int r = 0; r < rows; r++)
+            for (int c = 0; c < cols; c++)
+                node(out, cross(c, r), NodeType.CROSSROAD, CROSSROAD_PORT_BASE + 1 + r * cols + c, c + 1, r + 1);
+        for (int c = 0; c < cols; c++)
+            node(out, "SS" + c, NodeType.EXIT, EXIT_PORT_BASE + 1 + c, c + 1, rows + 1);
+        for (int r = 0; r < rows; r++)
+            node(out, "SE" + r, NodeType.EXIT, EXIT_PORT_BASE + 1 + cols + r, cols + 1, r + 1);
+        out.append('\n');
+
+        for (int c = 0; c < cols; c++)
+            road(out, "EN" + c, cross(c, 0), ENTRANCE_TRAVEL_MS, STREET_GREEN_MS);
+        for (int r = 0; r < rows; r++)
+            road(out, "EW" + r, cross(0, r), ENTRANCE_TRAVEL_MS, STREET_GREEN_MS);
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                String here = cross(c, r);
+                road(out, here, r + 1 < rows ? cross(c, r + 1) : "SS" + c,
+                        r + 1 < rows ? STREET_TRAVEL_MS : EXIT_TRAVEL_MS, r + 1 < rows ? STREET_GREEN_MS : 0);
+                road(out, here, c + 1 < cols ? cross(c + 1, r) : "SE" + r,
+                        c + 1 < cols ? STREET_TRAVEL_MS : EXIT_TRAVEL_MS, c + 1 < cols ? STREET_GREEN_MS : 0);
+            }
+        }
+        out.append('\n');
+
+        // Southbound from the north edge: straight through half of the time,
+        // otherwise turn east at a uniformly chosen row.
+        for (int c = 0; c < cols; c++) {
+            StringBuilder path = new StringBuilder("EN" + c);
+            for (int r = 0; r < rows; r++)
+                path.append(' ').append(cross(c, r));
+            path(out, rows, path + " SS" + c);
+            for (int turn = 0; turn < rows; turn++) {
+                path = new StringBuilder("EN" + c);
+                for (int r = 0; r <= turn; r++)
+                    path.append(' ').append(cross(c, r));
+                for (int cc = c + 1; cc < cols; cc++)
+                    path.append(' ').append(cross(cc, turn));
+                path(out, 1, path + " SE" + turn);
+            }
+        }
+        // Eastbound from the west edge, turning south at a uniformly chosen
+        // column.
+        for (int r = 0; r < rows; r++) {
+            StringBuilder path = new StringBuilder("EW" + r);
+            for (int c = 0; c < cols; c++)
+                path.append(' ').append(cross(c, r));
+            path(out, cols, path + " SE" + r);
+            for (int turn = 0; turn < cols; turn++) {
+                path = new StringBuilder("EW" + r);
+                for (int c = 0; c <= turn; c++)
+                    path.append(' ').append(cross(c, r));
+                for (int rr = r + 1; rr < rows; rr++)
+                    path.append(' ').append(cross(turn, rr));
+                path(out, 1, path + " SS" + turn);
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Generate an arterial network.
+     *
+     * @param length number of crossroads on the main road
+     * @return network file contents
+     * @throws IllegalArgumentException if the length is out of range
+     */
+    public static String arterial(int length) {
+        if (length < 1)
+            throw new IllegalArgumentException("arterial length must be at least 1");
+        checkSize(length, length + 1);
+
+        StringBuilder out = new StringBuilder();
+        out.append("# Generated arterial with ").append(length).append(" crossroads\n\n");
+
+        node(out, "EW", NodeType.ENTRANCE, ENTRANCE_PORT_BASE + 1, 0, 1);
+        for (int i = 0; i < length; i++)
+            node(out, "EN" + i, NodeType.ENTRANCE, ENTRANCE_PORT_BASE + 2 + i, i + 1, 0);
+        for (int i = 0; i < length; i++)
+            node(out, "CR" + i, NodeType.CROSSROAD, CROSSROAD_PORT_BASE + 1 + i, i + 1, 1);
+        node(out, "SE", NodeType.EXIT, EXIT_PORT_BASE + 1, length + 1, 1);
+        for (int i = 0; i < length; i++)
+            node(out, "SS" + i, NodeType.EXIT, EXIT_PORT_BASE + 2 + i, i + 1, 2);
+        out.append('\n');
+
+        road(out, "EW", "CR0", ENTRANCE_TRAVEL_MS, ARTERIAL_GREEN_MS);
+        for (int i = 0; i < length; i++) {
+            road(out, "EN" + i, "CR" + i, ENTRANCE_TRAVEL_MS, SIDE_GREEN_MS);
+            if (i + 1 < length)
+                road(out, "CR" + i, "CR" + (i + 1), STREET_TRAVEL_MS, ARTERIAL_GREEN_MS);
+            road(out, "CR" + i, "SS" + i, EXIT_TRAVEL_MS, 0);
+        }
+        road(out, "CR" + (length - 1), "SE", EXIT_TRAVEL_MS, 0);
+        out.append('\n');
+
+        // Main road: through traffic dominates, a few vehicles turn off at
+        // each side street.
+        StringBuilder main = new StringBuilder("EW");
+        for (int i = 0; i < length; i++) {
+            main.append(" CR").append(i);
+            path(out, 1, main + " SS" + i);
+        }
+        path(out, 2 * length, main + " SE");
+
+        // Side streets: cross, or ride the main road to a later exit.
+        for (int i = 0; i < length; i++) {
+            path(out, length - i, "EN" + i + " CR" + i + " SS" + i);
+            StringBuilder side = new StringBuilder("EN" + i + " CR" + i);
+            for (int j = i + 1; j < length; j++) {
+                side.append(" CR").append(j);
+                path(out, 1, side + " SS" + j);
+            }
+            path(out, 1, side + " SE");
+        }
+        return out.toString();
+    }
+
+    /**
+     * Reject networks whose nodes would not fit the port ranges.
+     *
+     * @param crossroads number of crossroads
+     * @param edgeNodes  number of entrances (and of exits)
+     */
+    private static void checkSize(long crossroads, int edgeNodes) {
+        if (crossroads > MAX_CROSSROADS || edgeNodes > MAX_EDGE_NODES)
+            throw new IllegalArgumentException("network too large: at most " + MAX_CROSSROADS
+                    + " crossroads and " + MAX_EDGE_NODES + " entrances/exits");
+    }
+
+    /**
+     * Returns the name of a grid crossroad.
+     *
+     * @param col column index
+     * @param row row index
+     * @return crossroad name
+     */
+    private static String cross(int col, int row) {
+        return "CR" + col + "x" + row;
+    }
+
+    /**
+     * Append a {@code node} line.
+     *
+     * @param out  output buffer
+     * @param name node name
+     * @param type node type
+     * @param port TCP port
+     * @param x    map column
+     * @param y    map row
+     */
+    private static void node(StringBuilder out, String name, NodeType type, int port, int x, int y) {
+        out.append("node ").append(name).append(' ').append(type).append(' ').append(port)
+                .append(' ').append(x).append(' ').append(y).append('\n');
+    }
+
+    /**
+     * Append a {@code road} line.
+     *
+     * @param out         output buffer
+     * @param origin      origin node
+     * @param destination destination node
+     * @param travelMs    travel time in ms
+     * @param greenMs     green light duration in ms, or 0 for roads into exits
+     */
+    private static void road(StringBuilder out, String origin, String destination, int travelMs, int greenMs) {
+        out.append("road ").append(origin).append(' ').append(destination).append(' ').append(travelMs);
+        if (greenMs > 0)
+            out.append(' ').append(greenMs);
+        out.append('\n');
+    }
+
+    /**
+     * Append a {@code path} line.
+     *
+     * @param out    output buffer
+     * @param weight selection weight
+     * @param nodes  space-separated node names
+     */
+    private static void path(StringBuilder out, int weight, String nodes) {
+        out.append("path ").append(weight).append(' ').append(nodes).append('\n');
+    }
+
+    /**
+     * Writes a generated network to a file, or to standard output if no file
+     * is given.
+     *
+     * @param args {@code grid <cols> <rows> [file]} or
+     *             {@code arterial <length> [file]}
+     * @throws IOException if the file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        String text;
+        int fileArg;
+        if (args.length >= 3 && args[0].equals("grid")) {
+            text = grid(Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+            fileArg = 3;
+        } else if (args.length >= 2 && args[0].equals("arterial")) {
+            text = arterial(Integer.parseInt(args[1]));
+            fileArg = 2;
+        } else {
+            System.out.println("Usage: TopologyGenerator grid <cols> <rows> [file]");
+            System.out.println("       TopologyGenerator arterial <length> [file]");
+            return;
+        }
+        // Validate before writing, so a broken generator never leaves a file
+        // the simulator cannot load.
+        Topology.parse(new BufferedReader(new StringReader(text)), "generated");
+
+        if (args.length > fileArg) {
+            try (Writer w = new OutputStreamWriter(new FileOutputStream(args[fileArg]), StandardCharsets.UTF_8)) {
+                w.write(text);
+            }
+            System.out.println("Wrote " + args[fileArg]);
+        } else {
+            System.out.print(text);
+        }
+    }
+}
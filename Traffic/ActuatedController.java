@@ -0,0 +1,114 @@
+package Traffic;
+
+/**
+ * Actuated green timing of one traffic light.
+ * <p>
+ * A green interval lasts at least {@code minGreen}. After that it is
+ * extended as long as there is a vehicle to serve, or, with an empty queue,
+ * for one more {@code gap} if the measured arrival rate makes an arrival
+ * within the gap more likely than not; otherwise the light gaps out. It
+ * never lasts longer than {@code maxGreen}.
+ * <p>
+ * The arrival rate is an exponentially weighted average over windows of at
+ * least {@value #RATE_WINDOW_MS} ms, computed from the running count of
+ * vehicles that reached the light. Instances are used by a single light and
+ * are not thread-safe.
+ */
+public class ActuatedController implements GreenTiming {
+    private static final long RATE_WINDOW_MS = 1000;
+    private static final double RATE_SMOOTHING = 0.3;
+    private static final double LN_2 = Math.log(2);
+
+    private final long minGreen;
+    private final long maxGreen;
+    private final long gap;
+
+    private long maxEnd;
+    private double arrivalRate = -1.0;
+    private long sampleTime = 0L;
+    private long sampleArrivals = 0L;
+
+    /**
+     * Create an actuated controller.
+     *
+     * @param minGreen minimum green time in ms
+     * @param maxGreen maximum green time in ms
+     * @param gap      extension (passage) time in ms
+     */
+    public ActuatedController(long minGreen, long maxGreen, long gap) {
+        if (minGreen <= 0 || maxGreen < minGreen || gap <= 0)
+            throw new IllegalArgumentException("require 0 < minGreen <= maxGreen and gap > 0");
+        this.minGreen = minGreen;
+        this.maxGreen = maxGreen;
+        this.gap = gap;
+    }
+
+    /**
+     * Start a green interval.
+     *
+     * @param start green start time in ms
+     * @return initial end of green (start plus the minimum green)
+     */
+    @Override
+    public long beginGreen(long start) {
+        this.maxEnd = start + this.maxGreen;
+        return start + this.minGreen;
+    }
+
+    /**
+     * Compute the end of green after an actuation check.
+     *
+     * @param now       current time in ms
+     * @param greenEnd  current end of green in ms
+     * @param headPass  green time still needed for the first waiting vehicle to
+     *                  enter and clear the junction, or -1 if the
+     *                  queue is empty
+     * @param arrivals  number of vehicles that reached the light so far
+     * @return new end of green, never earlier than {@code greenEnd} nor later
+     *         than the maximum green
+     */
+    @Override
+    public long extend(long now, long greenEnd, long headPass, long arrivals) {
+        sample(now, arrivals);
+        long wanted;
+        if (headPass >= 0) {
+            wanted = now + headPass;
+        } else if (this.arrivalRate * this.gap / 1000.0 >= LN_2) {
+            wanted = now + this.gap;
+        } else {
+            return greenEnd;
+        }
+        return Math.max(greenEnd, Math.min(this.maxEnd, wanted));
+    }
+
+    /**
+     * Update the arrival rate estimate.
+     *
+     * @param now      current time in ms
+     * @param arrivals number of vehicles that reached the light so far
+     */
+    private void sample(long now, long arrivals) {
+        if (this.sampleTime == 0L) {
+            this.sampleTime = now;
+            this.sampleArrivals = arrivals;
+            return;
+        }
+        long elapsed = now - this.sampleTime;
+        if (elapsed < RATE_WINDOW_MS)
+            return;
+        double rate = (arrivals - this.sampleArrivals) * 1000.0 / elapsed;
+        this.arrivalRate = this.arrivalRate < 0 ? rate
+                : RATE_SMOOTHING * rate + (1 - RATE_SMOOTHING) * this.arrivalRate;
+        this.sampleTime = now;
+        this.sampleArrivals = arrivals;
+    }
+
+    /**
+     * Returns the current arrival rate estimate.
+     *
+     * @return vehicles per second, or -1 before the first estimate
+     */
+    public double getArrivalRate() {
+        return this.arrivalRate;
+    }
+}
@@ -0,0 +1,32 @@
+package Traffic;
+
+/**
+ * Green interval timing of one traffic light, used instead of the road's
+ * fixed green time (see {@link TrafficLight#setTiming(GreenTiming)}).
+ */
+public interface GreenTiming {
+
+    /**
+     * Start a green interval.
+     *
+     * @param start green start time in ms
+     * @return initial end of green in ms
+     */
+    long beginGreen(long start);
+
+    /**
+     * Compute the end of green while the light is green. Called whenever the
+     * light checks its queue. The default keeps the end set at the start.
+     *
+     * @param now      current time in ms
+     * @param greenEnd current end of green in ms
+     * @param headPass green time still needed for the first waiting vehicle to
+     *                 enter and clear the junction, or -1 if the
+     *                 queue is empty
+     * @param arrivals number of vehicles that reached the light so far
+     * @return new end of green in ms
+     */
+    default long extend(long now, long greenEnd, long headPass, long arrivals) {
+        return greenEnd;
+    }
+}
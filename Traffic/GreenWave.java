@@ -0,0 +1,167 @@
+package Traffic;
+
+import java.util.*;
+
+import Node.NodeEnum;
+import Node.NodeType;
+import Vehicle.PathEnum;
+
+/**
+ * Green-wave signal plan of the network, computed identically by every node
+ * from the topology.
+ * <p>
+ * Each crossroad gets one coordinated incoming road and an offset. Paths
+ * are taken by decreasing weight; along each path, a crossroad not yet
+ * planned is coordinated on the road the path enters it by, with an offset
+ * equal to the previous crossroad's offset plus the time to clear that
+ * signal and the road's travel time. A crossroad reached straight from an
+ * entrance starts a new wave at offset 0. On the default map this puts the
+ * dominant route E1 &rarr; CR1 &rarr; CR4 &rarr; CR5 on one wave.
+ * <p>
+ * All crossroads share one cycle length: {@code -Dsignal.cycleMs} or, by
+ * default, the longest cycle any crossroad needs to give every phase its
+ * green and clearance time.
+ */
+public class GreenWave {
+    private static final long SERVICE_MS = 1000;
+
+    private final long pedestrianGreen;
+    private final RoadEnum[] coordinated;
+    private final long[] offset;
+    private final long cycle;
+
+    /**
+     * Compute the plan.
+     *
+     * @param pedestrianGreen green time of the pedestrian phase of
+     *                        single-signal crossroads, in ms
+     */
+    public GreenWave(long pedestrianGreen) {
+        this.pedestrianGreen = pedestrianGreen;
+        this.coordinated = new RoadEnum[NodeEnum.count()];
+        this.offset = new long[NodeEnum.count()];
+
+        PathEnum[] paths = PathEnum.values();
+        Arrays.sort(paths, Comparator.comparingInt(PathEnum::getProbToBeSelected).reversed()
+                .thenComparing(Comparator.naturalOrder()));
+        for (PathEnum path : paths) {
+            for (RoadEnum road : path.getRoads()) {
+                NodeEnum node = road.getDestination();
+                if (node.getType() != NodeType.CROSSROAD || this.coordinated[node.ordinal()] != null)
+                    continue;
+                NodeEnum from = road.getOrigin();
+                this.coordinated[node.ordinal()] = road;
+                this.offset[node.ordinal()] = from.getType() == NodeType.CROSSROAD
+                        ? this.offset[from.ordinal()] + SERVICE_MS + road.getTime()
+                        : 0L;
+            }
+        }
+
+        long needed = 0L;
+        for (NodeEnum node : NodeEnum.values()) {
+            if (node.getType() == NodeType.CROSSROAD)
+                needed = Math.max(needed, cycleNeeded(node));
+        }
+        String v = System.getProperty("signal.cycleMs");
+        this.cycle = (v != null && !v.isEmpty()) ? Math.max(needed, Long.parseLong(v)) : needed;
+    }
+
+    /**
+     * Returns the time a crossroad needs for one cycle at its nominal green
+     * times.
+     *
+     * @param node crossroad
+     * @return cycle time in ms
+     */
+    private long cycleNeeded(NodeEnum node) {
+        List<RoadEnum> roads = RoadEnum.getRoadsToCrossroad(node);
+        long total = 0L;
+        for (RoadEnum road : roads)
+            total += road.getGreenLightDuration() + TrafficLight.CLEARANCE_MS;
+        if (roads.size() < 2)
+            total += this.pedestrianGreen + TrafficLight.CLEARANCE_MS;
+        return total;
+    }
+
+    /**
+     * Returns the common cycle length.
+     *
+     * @return cycle length in ms
+     */
+    public long getCycle() {
+        return this.cycle;
+    }
+
+    /**
+     * Returns the coordinated road of a crossroad.
+     *
+     * @param node crossroad
+     * @return coordinated incoming road, or {@code null} if no path crosses
+     *         the crossroad
+     */
+    public RoadEnum getCoordinatedRoad(NodeEnum node) {
+        return this.coordinated[node.ordinal()];
+    }
+
+    /**
+     * Returns the offset of a crossroad: when, relative to the shared epoch
+     * and modulo the cycle, its coordinated road turns green.
+     *
+     * @param node crossroad
+     * @return offset in ms
+     */
+    public long getOffset(NodeEnum node) {
+        return Math.floorMod(this.offset[node.ordinal()], this.cycle);
+    }
+
+    /**
+     * Creates the green timing of the coordinated road of a crossroad. The
+     * road is red for the time the other phases need (green and clearance)
+     * plus its own clearance, and green for the rest of the cycle.
+     *
+     * @param node  crossroad
+     * @param epoch shared epoch in ms
+     * @return timing for the light of the coordinated road, or {@code null}
+     *         if the crossroad is not coordinated
+     */
+    public GreenTiming timingFor(NodeEnum node, long epoch) {
+        RoadEnum road = getCoordinatedRoad(node);
+        if (road == null)
+            return null;
+        long red = cycleNeeded(node) - road.getGreenLightDuration();
+        return new CoordinatedTiming(epoch + getOffset(node), this.cycle, this.cycle - red);
+    }
+
+    /**
+     * Green timing of a coordinated road: green ends at a fixed point of
+     * every cycle, whenever the phase actually started, so late starts are
+     * absorbed and early starts (other phases ending early) lengthen green.
+     */
+    private static final class CoordinatedTiming implements GreenTiming {
+        private static final long MIN_GREEN_MS = 1000;
+
+        private final long base;
+        private final long cycle;
+        private final long green;
+
+        /**
+         * Create a coordinated timing.
+         *
+         * @param base  instant at which a cycle starts with green, in ms
+         * @param cycle cycle length in ms
+         * @param green green time per cycle in ms
+         */
+        CoordinatedTiming(long base, long cycle, long green) {
+            this.base = base;
+            this.cycle = cycle;
+            this.green = green;
+        }
+
+        @Override
+        public long beginGreen(long start) {
+            long first = this.base + this.green;
+            long n = Math.floorDiv(start + MIN_GREEN_MS - first, this.cycle) + 1;
+            return first + n * this.cycle;
+        }
+    }
+}
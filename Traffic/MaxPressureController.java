@@ -0,0 +1,152 @@
+package Traffic;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntSupplier;
+
+import Comunication.Sender;
+import Event.QueueGossip;
+import Node.NodeEnum;
+import Node.NodeType;
+import Utils.LogicalClock;
+import Utils.TimerService;
+
+/**
+ * Max-pressure signal control of one crossroad.
+ * <p>
+ * Phase {@code i} serves incoming road {@code i}. At every hand-off the
+ * phase with the largest pressure is granted: the queue of its road minus
+ * the downstream queue, taken as the mean queue of the outgoing roads other
+ * than the one back to the road's origin. Ties go to the first phase after
+ * the current one, so equal pressures still rotate.
+ * <p>
+ * Local queues are read directly. Downstream queues are learnt from the
+ * neighbouring crossroads through {@link QueueGossip}: every
+ * {@code signal.gossipMs} (default 500) the controller reports the queue of
+ * each incoming road to the crossroad it comes from, when it changed. Roads
+ * into exits have no downstream queue.
+ */
+public class MaxPressureController {
+    private static final long GOSSIP_MS;
+
+    static {
+        GOSSIP_MS = Long.parseLong(System.getProperty("signal.gossipMs", "500"));
+    }
+
+    private final NodeEnum node;
+    private final LogicalClock clock;
+    private final TimerService timer;
+    private final List<RoadEnum> incoming;
+    private final List<RoadEnum> outgoing;
+    private final IntSupplier[] queues;
+    private final int[] lastSent;
+    private final AtomicIntegerArray downstream;
+
+    /**
+     * Create the controller of a crossroad and start its gossip.
+     *
+     * @param node  crossroad owning the controller
+     * @param clock logical clock used for gossip timestamps
+     * @param timer timer of the node, used for the periodic gossip
+     */
+    public MaxPressureController(NodeEnum node, LogicalClock clock, TimerService timer) {
+        this.node = node;
+        this.clock = clock;
+        this.timer = timer;
+        this.incoming = RoadEnum.getRoadsToCrossroad(node);
+        this.outgoing = RoadEnum.getRoadsFromCrossroad(node);
+        this.queues = new IntSupplier[this.incoming.size()];
+        this.lastSent = new int[this.incoming.size()];
+        this.downstream = new AtomicIntegerArray(this.outgoing.size());
+        scheduleGossip();
+    }
+
+    /**
+     * Sets the supplier of the number of vehicles on an incoming road and
+     * waiting at its signal.
+     *
+     * @param road  incoming road
+     * @param queue vehicle count supplier
+     */
+    public void setQueue(RoadEnum road, IntSupplier queue) {
+        this.queues[this.incoming.indexOf(road)] = queue;
+    }
+
+    /**
+     * Returns the phase with the largest pressure. Used as the phase
+     * selector of the crossroad's {@link Utils.PhaseScheduler}.
+     *
+     * @param current phase that is ending
+     * @return phase to grant next
+     */
+    public int selectPhase(int current) {
+        int phases = this.incoming.size();
+        int best = Math.floorMod(current + 1, phases);
+        double bestPressure = Double.NEGATIVE_INFINITY;
+        for (int i = 1; i <= phases; i++) {
+            int phase = Math.floorMod(current + i, phases);
+            double p = pressure(phase);
+            if (p > bestPressure) {
+                best = phase;
+                bestPressure = p;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Computes the pressure of a phase.
+     *
+     * @param phase phase index (incoming road index)
+     * @return own queue minus mean downstream queue
+     */
+    private double pressure(int phase) {
+        RoadEnum road = this.incoming.get(phase);
+        int own = this.queues[phase] == null ? 0 : this.queues[phase].getAsInt();
+        long sum = 0;
+        int count = 0;
+        for (int k = 0; k < this.outgoing.size(); k++) {
+            if (this.outgoing.get(k).getDestination() == road.getOrigin())
+                continue;
+            sum += this.downstream.get(k);
+            count++;
+        }
+        return own - (count == 0 ? 0.0 : (double) sum / count);
+    }
+
+    /**
+     * Stores the queue reported by a downstream crossroad.
+     *
+     * @param gossip received message
+     */
+    public void onGossip(QueueGossip gossip) {
+        int k = this.outgoing.indexOf(RoadEnum.between(this.node, gossip.getNode()));
+        if (k >= 0)
+            this.downstream.set(k, gossip.getQueued());
+    }
+
+    /**
+     * Schedules the next gossip round on the node's timer.
+     */
+    private void scheduleGossip() {
+        this.timer.schedule(System.currentTimeMillis() + GOSSIP_MS, this::gossip);
+    }
+
+    /**
+     * Reports changed incoming queues to the upstream crossroads.
+     */
+    private void gossip() {
+        for (int j = 0; j < this.incoming.size(); j++) {
+            RoadEnum road = this.incoming.get(j);
+            if (road.getOrigin().getType() != NodeType.CROSSROAD || this.queues[j] == null)
+                continue;
+            int queued = this.queues[j].getAsInt();
+            if (queued != this.lastSent[j]) {
+                this.lastSent[j] = queued;
+                Sender.sendQueueGossip(new QueueGossip(this.node, this.clock.tick(), queued),
+                        road.getOrigin().getPort());
+            }
+        }
+        scheduleGossip();
+    }
+}
@@ -1,8 +1,11 @@
 package Traffic;
 
 import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.List;
 
 import Comunication.Sender;
+import Comunication.SnapshotAgent;
 import Event.*;
 import Utils.*;
 import Vehicle.*;
@@ -12,20 +15,41 @@ import Vehicle.*;
  * <p>
  * The PassRoad thread consumes arriving vehicles from an incoming
  * {@link SynchronizedQueue}, schedules their simulated passage time
- * based on vehicle type and road travel time, and when the scheduled time
- * is reached it emits a {@link VehicleEvent} of type
- * {@link EventType#VEHICLE_SIGNAL_ARRIVAL} to the central event
- * handler. Vehicles that have finished crossing are added to the
- * {@code passedQueue} for downstream processing.
+ * based on vehicle type and road travel time on the node's
+ * {@link TimerService}. When the scheduled time is reached the timer
+ * thread adds the vehicle to the {@code passedQueue} for downstream
+ * processing and posts a {@link VehicleEvent} of type
+ * {@link EventType#VEHICLE_SIGNAL_ARRIVAL} for the central event handler;
+ * the event is sent by the node's outbox thread, so a slow connection
+ * does not delay the releases of the other roads sharing the timer.
+ * <p>
+ * Vehicles leave the road in arrival order: a vehicle that would overtake
+ * the previous one is delayed until {@value #DELAY_BETWEEN_PASSES_MS} ms
+ * after it, and every timer releases the due vehicles from the head of the
+ * road's passing queue.
+ * <p>
+ * The arriving and passing queues are registered with the node's
+ * {@link SnapshotAgent} and every move between queues is done inside a
+ * snapshot transfer.
+ * <p>
+ * On a road with several lanes there is one runner per lane; vehicles keep
+ * their order within a lane only.
  */
 public class PassRoad extends Thread {
     private static final long DELAY_BETWEEN_PASSES_MS = 200;
+    private static final int ARRIVAL_BATCH = 32;
 
     private final SynchronizedQueue<Vehicle> arrivingQueue;
     private final SynchronizedQueue<Vehicle> passedQueue;
     private final RoadEnum road;
     private final LogicalClock clock;
+    private final TimerService timer;
+    private final SnapshotAgent snapshotAgent;
     private final SynchronizedQueue<SimpleEntry<Long, Vehicle>> passingQueue = new SynchronizedQueue<>();
+    private final Runnable releaseDue = this::releaseDue;
+    private final Runnable onRelease;
+    private final List<Vehicle> arrivals = new ArrayList<>(ARRIVAL_BATCH);
+    private long lastDeadline = 0L;
 
     /**
      * Create a PassRoad runner.
@@ -34,74 +58,173 @@ public class PassRoad extends Thread {
      * @param passedQueue   queue where vehicles that finished passing are added
      * @param road          the {@link RoadEnum} this PassRoad simulates
      * @param clock         logical clock used for event timestamps
+     * @param timer         timer service of the node, releasing vehicles at
+     *                      the end of their traversal
+     * @param snapshotAgent snapshot participant of the node
+     */
+    public PassRoad(SynchronizedQueue<Vehicle> arrivingQueue,
+            SynchronizedQueue<Vehicle> passedQueue,
+            RoadEnum road,
+            LogicalClock clock,
+            TimerService timer,
+            SnapshotAgent snapshotAgent) {
+        this(arrivingQueue, passedQueue, road, clock, timer, snapshotAgent, null);
+    }
+
+    /**
+     * Create a PassRoad runner that notifies a listener after vehicles are
+     * released to {@code passedQueue}. The listener runs on the timer's
+     * thread, once per release, and must not block.
+     *
+     * @param arrivingQueue queue where arriving vehicles are enqueued
+     * @param passedQueue   queue where vehicles that finished passing are added
+     * @param road          the {@link RoadEnum} this PassRoad simulates
+     * @param clock         logical clock used for event timestamps
+     * @param timer         timer service of the node, releasing vehicles at
+     *                      the end of their traversal
+     * @param snapshotAgent snapshot participant of the node
+     * @param onRelease     listener run after each release, or {@code null}
+     */
+    public PassRoad(SynchronizedQueue<Vehicle> arrivingQueue,
+            SynchronizedQueue<Vehicle> passedQueue,
+            RoadEnum road,
+            LogicalClock clock,
+            TimerService timer,
+            SnapshotAgent snapshotAgent,
+            Runnable onRelease) {
+        this(arrivingQueue, passedQueue, road, clock, timer, snapshotAgent, onRelease, 0);
+    }
+
+    /**
+     * Create a PassRoad runner for one lane of a road.
+     *
+     * @param arrivingQueue queue where arriving vehicles are enqueued
+     * @param passedQueue   queue where vehicles that finished passing are added
+     * @param road          the {@link RoadEnum} this PassRoad simulates
+     * @param clock         logical clock used for event timestamps
+     * @param timer         timer service of the node, releasing vehicles at
+     *                      the end of their traversal
+     * @param snapshotAgent snapshot participant of the node
+     * @param onRelease     listener run after each release, or {@code null}
+     * @param lane          lane of {@code road} this runner simulates
      */
     public PassRoad(SynchronizedQueue<Vehicle> arrivingQueue,
             SynchronizedQueue<Vehicle> passedQueue,
             RoadEnum road,
-            LogicalClock clock) {
+            LogicalClock clock,
+            TimerService timer,
+            SnapshotAgent snapshotAgent,
+            Runnable onRelease,
+            int lane) {
         this.arrivingQueue = arrivingQueue;
         this.passedQueue = passedQueue;
         this.road = road;
         this.clock = clock;
+        this.timer = timer;
+        this.snapshotAgent = snapshotAgent;
+        this.onRelease = onRelease;
+        snapshotAgent.register(road.laneName(lane) + " arriving", road, arrivingQueue::size);
+        snapshotAgent.register(road.laneName(lane) + " passing", road, passingQueue::size);
     }
 
     /**
-     * Main loop: polls for newly arrived vehicles, schedules their pass
-     * times and triggers processing when the scheduled time is reached.
+     * Main loop: blocks until vehicles arrive, then schedules the end of
+     * their traversal on the timer service.
      */
     @Override
     public void run() {
         while (true) {
             try {
-                Vehicle vehicle = this.arrivingQueue.poll();
-                if (vehicle != null) {
-                    this.processNewArrival(vehicle);
-                }
-
-                SimpleEntry<Long, Vehicle> entry = this.passingQueue.peek();
-                if (entry != null && System.currentTimeMillis() >= entry.getKey()) {
-                    this.processPassedRoad();
-                } else {
-                    Thread.sleep(50);
-                }
+                this.arrivingQueue.awaitNonEmpty();
+                this.drainArrivals();
             } catch (Exception e) {
                 e.printStackTrace();
             }
         }
     }
 
+    /**
+     * Moves every vehicle waiting in the arriving queue onto the road,
+     * scheduling the end of its traversal, in batches of
+     * {@value #ARRIVAL_BATCH} per snapshot transfer. Must only be called by
+     * the consumer of the arriving queue: this runner's own thread, or the
+     * crossroad's event loop when the thread is not started.
+     */
+    public void drainArrivals() {
+        while (this.arrivingQueue.size() > 0) {
+            this.snapshotAgent.beginTransfer();
+            try {
+                if (this.arrivingQueue.drainTo(this.arrivals, ARRIVAL_BATCH) == 0)
+                    return;
+                for (Vehicle vehicle : this.arrivals) {
+                    this.processNewArrival(vehicle);
+                }
+            } finally {
+                this.snapshotAgent.endTransfer();
+                this.arrivals.clear();
+            }
+        }
+    }
+
     /**
      * Schedule a newly arrived vehicle by computing its expected passing
-     * timestamp and inserting it into the internal timed queue. If the
-     * computed timestamp would overtake the last scheduled vehicle, a
-     * small delay is applied to keep vehicle order.
+     * timestamp, inserting it into the passing queue and setting a timer for
+     * it. The traversal starts when the vehicle cleared the upstream junction
+     * if it carries that time (vehicles sent in a {@link DepartureBatch}),
+     * otherwise on arrival. If the computed timestamp would overtake the last
+     * scheduled vehicle, a small delay is applied to keep vehicle order.
      *
      * @param vehicle vehicle that just arrived
      */
     private void processNewArrival(Vehicle vehicle) {
-        SimpleEntry<Long, Vehicle> last = this.passingQueue.peekLast();
-        long travelTime = System.currentTimeMillis()
-                + vehicle.getType().getTimeToPass(road.getTime());
+        long start = vehicle.getDepartureTime() > 0
+                ? vehicle.getDepartureTime()
+                : System.currentTimeMillis();
+        long deadline = start + vehicle.getType().getTimeToPass(road.getTime());
 
-        if (last != null && travelTime < last.getKey()) {
-            long corrected = last.getKey() + DELAY_BETWEEN_PASSES_MS;
-            this.passingQueue.add(new SimpleEntry<>(corrected, vehicle));
-        } else {
-            this.passingQueue.add(new SimpleEntry<>(travelTime, vehicle));
+        if (deadline < this.lastDeadline) {
+            deadline = this.lastDeadline + DELAY_BETWEEN_PASSES_MS;
         }
+        this.lastDeadline = deadline;
+        this.passingQueue.add(new SimpleEntry<>(deadline, vehicle));
+        this.timer.schedule(deadline, this.releaseDue);
     }
 
     /**
-     * Process the next vehicle whose scheduled pass time has arrived.
-     * Sends a {@link VehicleEvent} to the event handler indicating the
-     * vehicle's arrival at the next signal/destination and enqueues the
-     * vehicle into {@code passedQueue} for downstream components.
+     * Timer action: release, in order, every vehicle at the head of the
+     * passing queue whose scheduled pass time has arrived, then notify the
+     * listener once.
+     */
+    private void releaseDue() {
+        long now = System.currentTimeMillis();
+        boolean released = false;
+        SimpleEntry<Long, Vehicle> entry;
+        while ((entry = this.passingQueue.peek()) != null && entry.getKey() <= now) {
+            this.processPassedRoad();
+            released = true;
+        }
+        if (released && this.onRelease != null)
+            this.onRelease.run();
+    }
+
+    /**
+     * Process the next vehicle whose scheduled pass time has arrived: post
+     * a {@link VehicleEvent} reporting its arrival at the signal to the
+     * node's event outbox, without waiting for it to be sent, then enqueue
+     * it into {@code passedQueue} for downstream components. The event is
+     * posted first so that it is serialized before the light can change the
+     * vehicle, and reaches the outbox before the vehicle's departure.
      */
     private void processPassedRoad() {
-        SimpleEntry<Long, Vehicle> entry = this.passingQueue.remove();
-        Vehicle v = entry.getValue();
-        Sender.sendToEventHandler(
-                new VehicleEvent(EventType.VEHICLE_SIGNAL_ARRIVAL, road.getDestination(), clock.tick(), v));
-        passedQueue.add(v);
+        this.snapshotAgent.beginTransfer();
+        try {
+            SimpleEntry<Long, Vehicle> entry = this.passingQueue.remove();
+            Vehicle v = entry.getValue();
+            Sender.postToEventHandler(
+                    new VehicleEvent(EventType.VEHICLE_SIGNAL_ARRIVAL, road.getDestination(), clock.tick(), v));
+            passedQueue.add(v);
+        } finally {
+            this.snapshotAgent.endTransfer();
+        }
     }
 }
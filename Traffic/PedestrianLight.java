@@ -1,54 +1,105 @@
 package Traffic;
 
-import Utils.RoundRobin;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import Utils.EventLoop;
+import Utils.PhaseScheduler;
+import Utils.TimerService;
 
 /**
  * Simple pedestrian light controller.
  * <p>
- * This thread cooperates with a {@link RoundRobin} coordinator to
- * grant a short pedestrian "green" period for the configured turn id. When
- * its turn arrives it prints a console message, waits for the configured
- * green duration, then prints a red message and releases the turn.
+ * This thread owns one phase of a {@link PhaseScheduler} to grant a short
+ * pedestrian "green" period. When its phase starts it prints a console
+ * message, waits for the configured green duration, then prints a red
+ * message and releases the phase. It can also be driven by the crossroad's
+ * {@link EventLoop} through {@link #runPhase(EventLoop, Runnable)}.
+ * <p>
+ * The light has a call button: {@link #pressButton()} registers a call,
+ * which is cleared when the phase starts. A crossroad running the phase on
+ * demand makes it skippable with {@link #hasCall()} as its demand, so the
+ * phase is only served after a pedestrian pressed the button. Pedestrian
+ * calls can be simulated with
+ * {@link #simulateCalls(TimerService, double, SplittableRandom)}.
  */
-public class PedestrianLight extends Thread {
-    private static final int GREEN_LIGHT_DURATION_MS = 5000;
+public class PedestrianLight extends Thread implements SignalPhase {
+    private static final long CLEARANCE_MS = 200;
 
-    private final RoundRobin roundRobin;
-    private final int id;
+    private final PhaseScheduler scheduler;
+    private final int phase;
+    private final long greenDuration;
+    private final AtomicBoolean called = new AtomicBoolean(false);
 
     /**
      * Create a pedestrian light controller.
      *
-     * @param roundRobin the {@link RoundRobin} coordinator used to wait/release
-     *                   turns
-     * @param id         the identifier used when interacting with the coordinator
+     * @param scheduler     the {@link PhaseScheduler} used to wait for and
+     *                      release the phase
+     * @param phase         the phase of {@code scheduler} owned by this light
+     * @param greenDuration pedestrian green time in ms
+     */
+    public PedestrianLight(PhaseScheduler scheduler, int phase, long greenDuration) {
+        this.scheduler = scheduler;
+        this.phase = phase;
+        this.greenDuration = greenDuration;
+    }
+
+    /**
+     * Registers a pedestrian call. The call stays pending until the next
+     * pedestrian phase starts.
+     */
+    public void pressButton() {
+        called.set(true);
+    }
+
+    /**
+     * Returns whether a pedestrian call is pending.
+     *
+     * @return {@code true} if the button was pressed since the last phase
      */
-    public PedestrianLight(RoundRobin roundRobin, int id) {
-        this.roundRobin = roundRobin;
-        this.id = id;
+    public boolean hasCall() {
+        return called.get();
     }
 
     /**
-     * Main loop: wait for the coordinator to grant the turn, hold the
-     * green interval, then release the turn. Loop runs indefinitely.
+     * Simulates pedestrians pressing the button at exponentially distributed
+     * intervals, scheduled on the given timer (no thread is used).
+     *
+     * @param timer          timer service of the node
+     * @param callsPerSecond mean rate of button presses
+     * @param rnd            random stream of the button
+     */
+    public void simulateCalls(TimerService timer, double callsPerSecond, SplittableRandom rnd) {
+        if (callsPerSecond <= 0)
+            return;
+        long delay = (long) (-Math.log(1.0 - rnd.nextDouble()) / callsPerSecond * 1000);
+        timer.schedule(System.currentTimeMillis() + delay, () -> {
+            pressButton();
+            simulateCalls(timer, callsPerSecond, rnd);
+        });
+    }
+
+    /**
+     * Main loop: wait for the scheduler to grant the phase, hold the
+     * green interval, then release the phase. Loop runs indefinitely.
      */
     @Override
     public void run() {
         while (true) {
             try {
-                roundRobin.esperarTurno(id);
-                long greenStartTime = System.currentTimeMillis();
-                long greenEndTime = greenStartTime + GREEN_LIGHT_DURATION_MS;
-                System.out.println("Pedestrian Light GREEN");
-                while (true) {
-                    long now = System.currentTimeMillis();
-                    if (now >= greenEndTime) {
-                        break;
-                    }
+                scheduler.awaitPhase(phase);
+                called.set(false);
+                long greenStartTime = scheduler.getPhaseStart(phase);
+                long greenEndTime = greenStartTime + scheduler.greenTime(phase, greenDuration);
+                System.out.println("Pedestrian Light GREEN (hand-off " + scheduler.getLastHandoffMicros() + " us)");
+                long remaining = greenEndTime - System.currentTimeMillis();
+                if (remaining > 0) {
+                    Thread.sleep(remaining);
                 }
                 System.out.println("Pedestrian Light RED");
-                Thread.sleep(200);
-                roundRobin.terminarTurno();
+                Thread.sleep(CLEARANCE_MS);
+                scheduler.release();
 
             } catch (InterruptedException e) {
                 e.printStackTrace();
@@ -57,4 +108,21 @@ public class PedestrianLight extends Thread {
             }
         }
     }
+
+    /**
+     * Runs one pedestrian phase on the event loop (loop mode).
+     *
+     * @param loop event loop of the crossroad
+     * @param done action to run after red and the clearance interval
+     */
+    @Override
+    public void runPhase(EventLoop loop, Runnable done) {
+        called.set(false);
+        long greenEndTime = scheduler.getPhaseStart(phase) + scheduler.greenTime(phase, greenDuration);
+        System.out.println("Pedestrian Light GREEN (hand-off " + scheduler.getLastHandoffMicros() + " us)");
+        loop.schedule(greenEndTime, () -> {
+            System.out.println("Pedestrian Light RED");
+            loop.schedule(System.currentTimeMillis() + CLEARANCE_MS, done);
+        });
+    }
 }
@@ -0,0 +1,181 @@
+package Traffic;
+
+import java.util.*;
+
+import Comunication.Sender;
+import Event.RoadCredit;
+import Event.RoadOccupancyEvent;
+import Node.NodeEnum;
+import Node.NodeType;
+import Utils.LogicalClock;
+import Utils.TimerService;
+import Vehicle.Vehicle;
+
+/**
+ * Road space of the roads leaving one node (credit-based flow control).
+ * <p>
+ * The node keeps, for every outgoing road that ends at a crossroad, the
+ * space still free on it, starting from {@link RoadEnum#getCapacity()}. A
+ * vehicle may only be sent onto a road after taking its length from the
+ * free space; the crossroad at the end of the road hands the space back
+ * with a {@link RoadCredit} once the vehicle has left the road through its
+ * signal. A full road therefore stops the traffic upstream of it, and the
+ * queues spill back. Roads to exits never fill up.
+ * <p>
+ * Every {@code simulation.occupancyIntervalMs} (default 1000) the space in
+ * use on each road is reported to the event handler. Road capacity is on
+ * unless {@code -Dsimulation.roadCapacity=false}.
+ */
+public class RoadCapacity {
+    public static final boolean ENABLED;
+    private static final long REPORT_INTERVAL_MS;
+
+    static {
+        ENABLED = Boolean.parseBoolean(System.getProperty("simulation.roadCapacity", "true"));
+        REPORT_INTERVAL_MS = Long.parseLong(System.getProperty("simulation.occupancyIntervalMs", "1000"));
+    }
+
+    private final NodeEnum node;
+    private final LogicalClock clock;
+    private final TimerService timer;
+    private final List<RoadEnum> outgoing;
+    private final int[] free;
+
+    /**
+     * Create the road space table of a node and start its occupancy
+     * reports.
+     *
+     * @param node  node the roads leave from
+     * @param clock logical clock used for report timestamps
+     * @param timer timer of the node, used for the periodic reports
+     */
+    public RoadCapacity(NodeEnum node, LogicalClock clock, TimerService timer) {
+        this.node = node;
+        this.clock = clock;
+        this.timer = timer;
+        this.outgoing = RoadEnum.getRoadsFromCrossroad(node);
+        this.free = new int[this.outgoing.size()];
+        for (int k = 0; k < this.free.length; k++) {
+            this.free[k] = this.outgoing.get(k).getCapacity();
+        }
+        scheduleReport();
+    }
+
+    /**
+     * Returns whether the space on a road is limited.
+     *
+     * @param road outgoing road
+     * @return true if the road ends at a crossroad
+     */
+    private static boolean isLimited(RoadEnum road) {
+        return road != null && road.getDestination().getType() == NodeType.CROSSROAD;
+    }
+
+    /**
+     * Takes the space of a vehicle on a road if there is enough of it.
+     *
+     * @param road    outgoing road
+     * @param vehicle vehicle to send onto the road
+     * @return true if the vehicle may be sent (always for unlimited roads)
+     */
+    public synchronized boolean tryAcquire(RoadEnum road, Vehicle vehicle) {
+        if (!isLimited(road))
+            return true;
+        int k = this.outgoing.indexOf(road);
+        int length = vehicle.getType().getLength();
+        if (this.free[k] < length)
+            return false;
+        this.free[k] -= length;
+        return true;
+    }
+
+    /**
+     * Waits until a road has room for a vehicle, without taking it.
+     *
+     * @param road     outgoing road
+     * @param vehicle  vehicle to send onto the road
+     * @param deadline time in ms to stop waiting at, or 0 to wait without
+     *                 limit
+     * @return true if the road has room
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized boolean awaitRoom(RoadEnum road, Vehicle vehicle, long deadline)
+            throws InterruptedException {
+        if (!isLimited(road))
+            return true;
+        int k = this.outgoing.indexOf(road);
+        int length = vehicle.getType().getLength();
+        while (this.free[k] < length) {
+            if (deadline == 0L) {
+                wait();
+                continue;
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0)
+                return false;
+            wait(remaining);
+        }
+        return true;
+    }
+
+    /**
+     * Takes the space of a vehicle on a road, waiting as long as needed.
+     *
+     * @param road    outgoing road
+     * @param vehicle vehicle to send onto the road
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized void acquire(RoadEnum road, Vehicle vehicle) throws InterruptedException {
+        while (!tryAcquire(road, vehicle)) {
+            awaitRoom(road, vehicle, 0L);
+        }
+    }
+
+    /**
+     * Hands back road space freed by the crossroad at the end of a road.
+     *
+     * @param credit received credit
+     */
+    public synchronized void onCredit(RoadCredit credit) {
+        int k = this.outgoing.indexOf(RoadEnum.between(this.node, credit.getNode()));
+        if (k < 0)
+            return;
+        this.free[k] = Math.min(this.outgoing.get(k).getCapacity(), this.free[k] + credit.getUnits());
+        notifyAll();
+    }
+
+    /**
+     * Returns the space in use on a road.
+     *
+     * @param road outgoing road
+     * @return space in half car lengths
+     */
+    public synchronized int getOccupied(RoadEnum road) {
+        int k = this.outgoing.indexOf(road);
+        return k < 0 ? 0 : road.getCapacity() - this.free[k];
+    }
+
+    /**
+     * Schedules the next occupancy report on the node's timer.
+     */
+    private void scheduleReport() {
+        this.timer.schedule(System.currentTimeMillis() + REPORT_INTERVAL_MS, this::report);
+    }
+
+    /**
+     * Reports the space in use on every limited road to the event handler.
+     */
+    private void report() {
+        Map<RoadEnum, Integer> occupied = new HashMap<>();
+        synchronized (this) {
+            for (int k = 0; k < this.free.length; k++) {
+                RoadEnum road = this.outgoing.get(k);
+                if (isLimited(road))
+                    occupied.put(road, road.getCapacity() - this.free[k]);
+            }
+        }
+        if (!occupied.isEmpty())
+            Sender.sendToEventHandler(new RoadOccupancyEvent(this.node, this.clock.get(), occupied));
+        scheduleReport();
+    }
+}
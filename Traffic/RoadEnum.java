@@ -1,73 +1,170 @@
 package Traffic;
 
 import Node.NodeEnum;
+import Node.Topology;
+
+import java.io.InvalidObjectException;
+import java.io.Serializable;
 import java.util.*;
 
 /**
- * Enumeration representing all roads available in the system.
+ * All roads available in the system, as loaded from the {@link Topology}.
  * Each road connects two nodes.
+ * <p>
+ * Roads behave like enum constants: one instance per road in each process
+ * (deserialized roads resolve to it), named {@code <origin>_<destination>},
+ * with a dense {@link #ordinal()}.
+ * <p>
+ * Lookups by node are served from tables built once when the class is
+ * loaded and indexed by {@link NodeEnum} ordinal: the roads to and from
+ * each node, and {@link #between(NodeEnum, NodeEnum)}, which only scans the
+ * few roads leaving the origin, so the tables stay linear in the size of
+ * the network.
+ * <p>
+ * Each road holds a limited number of vehicles: its capacity, in half car
+ * lengths, is its length divided by the length of a car, taking the travel
+ * time as the length and {@code -Dsimulation.carLengthMs} (default 150) as
+ * the time to drive one car length. A road always holds at least one truck
+ * per lane.
+ * <p>
+ * A road may have several lanes. Each road leaving the destination of the
+ * road is served by one lane, in topology order and cycling over the lanes
+ * ({@link #laneFor(NodeEnum)}), so vehicles heading to different roads can
+ * queue and leave side by side.
  */
-public enum RoadEnum {
-    E1_CR1(NodeEnum.E1, NodeEnum.CR1, 1000, 3000),
-    E2_CR2(NodeEnum.E2, NodeEnum.CR2, 1000, 3000),
-    E3_CR3(NodeEnum.E3, NodeEnum.CR3, 1000, 3000),
-    CR1_CR2(NodeEnum.CR1, NodeEnum.CR2, 1500, 3000),
-    CR1_CR4(NodeEnum.CR1, NodeEnum.CR4, 1500, 3000),
-    CR2_CR1(NodeEnum.CR2, NodeEnum.CR1, 1500, 3000),
-    CR2_CR3(NodeEnum.CR2, NodeEnum.CR3, 1500, 3000),
-    CR2_CR5(NodeEnum.CR2, NodeEnum.CR5, 1500, 3000),
-    CR3_CR2(NodeEnum.CR3, NodeEnum.CR2, 1500, 3000),
-    CR4_CR5(NodeEnum.CR4, NodeEnum.CR5, 1500, 3000),
-    CR3_S(NodeEnum.CR3, NodeEnum.S, 2000),
-    CR5_S(NodeEnum.CR5, NodeEnum.S, 2000);
+public final class RoadEnum implements Serializable, Comparable<RoadEnum> {
+    private static final long serialVersionUID = 1L;
+    private static final int MIN_CAPACITY = 4;
+    private static final long CAR_LENGTH_MS;
+
+    private static final RoadEnum[] VALUES;
+    private static final RoadEnum[][] ROADS_FROM;
+    private static final List<List<RoadEnum>> ROADS_TO_LISTS = new ArrayList<>();
+    private static final List<List<RoadEnum>> ROADS_FROM_LISTS = new ArrayList<>();
+    private static final Map<String, RoadEnum> BY_NAME = new HashMap<>();
 
+    static {
+        CAR_LENGTH_MS = Long.parseLong(System.getProperty("simulation.carLengthMs", "150"));
+        List<Topology.RoadSpec> specs = Topology.get().getRoads();
+        VALUES = new RoadEnum[specs.size()];
+        List<List<RoadEnum>> to = new ArrayList<>();
+        List<List<RoadEnum>> from = new ArrayList<>();
+        for (int n = 0; n < NodeEnum.count(); n++) {
+            to.add(new ArrayList<>());
+            from.add(new ArrayList<>());
+        }
+        for (int i = 0; i < specs.size(); i++) {
+            Topology.RoadSpec s = specs.get(i);
+            RoadEnum road = new RoadEnum(i, NodeEnum.toNodeEnum(s.origin), NodeEnum.toNodeEnum(s.destination),
+                    s.travelTime, s.greenLightDuration, s.lanes);
+            VALUES[i] = road;
+            BY_NAME.put(road.name, road);
+            from.get(road.origin.ordinal()).add(road);
+            to.get(road.destination.ordinal()).add(road);
+        }
+        ROADS_FROM = new RoadEnum[NodeEnum.count()][];
+        for (int n = 0; n < NodeEnum.count(); n++) {
+            ROADS_FROM[n] = from.get(n).toArray(new RoadEnum[0]);
+            ROADS_FROM_LISTS.add(Collections.unmodifiableList(Arrays.asList(ROADS_FROM[n])));
+            ROADS_TO_LISTS.add(Collections.unmodifiableList(to.get(n)));
+        }
+    }
+
+    private final String name;
+    private final int ordinal;
     private final NodeEnum origin;
     private final NodeEnum destination;
     private final int timeToTravel;
     private final int greenLightDuration;
-
-    /**
-     * Create a road with a specified travel time and the default green
-     * light duration.
-     *
-     * @param origin       origin node of the road
-     * @param destination  destination node of the road
-     * @param timeToTravel base travel time in milliseconds
-     */
-    private RoadEnum(NodeEnum origin, NodeEnum destination, int timeToTravel) {
-        this(origin, destination, timeToTravel, 0);
-    }
+    private final int lanes;
+    private final int capacity;
 
     /**
      * Create a road with an explicit travel time and green light duration.
      *
+     * @param ordinal            index of the road in {@link #values()}
      * @param origin             origin node of the road
      * @param destination        destination node of the road
-     * @param timteToTravel      base travel time in milliseconds
+     * @param timeToTravel       base travel time in milliseconds
      * @param greenLightDuration green light duration in milliseconds
+     * @param lanes              number of lanes
      */
-    private RoadEnum(NodeEnum origin, NodeEnum destination, int timteToTravel, int greenLightDuration) {
+    private RoadEnum(int ordinal, NodeEnum origin, NodeEnum destination, int timeToTravel, int greenLightDuration,
+            int lanes) {
+        this.name = origin + "_" + destination;
+        this.ordinal = ordinal;
         this.origin = origin;
         this.destination = destination;
-        this.timeToTravel = timteToTravel;
+        this.timeToTravel = timeToTravel;
         this.greenLightDuration = greenLightDuration;
+        this.lanes = lanes;
+        this.capacity = (int) Math.max(MIN_CAPACITY, 2L * timeToTravel / CAR_LENGTH_MS) * lanes;
+    }
+
+    /**
+     * Returns every road, in topology order.
+     *
+     * @return new array with all roads
+     */
+    public static RoadEnum[] values() {
+        return VALUES.clone();
+    }
+
+    /**
+     * Returns the number of roads.
+     *
+     * @return road count
+     */
+    public static int count() {
+        return VALUES.length;
     }
 
     /**
      * Convert a string identifier to its {@link RoadEnum} value.
      *
-     * @param roadStr string representation of the enum (for example "E1_CR1")
+     * @param roadStr road name (for example "E1_CR1")
      * @return matching {@link RoadEnum} or {@code null} if not found
      */
     public static RoadEnum toRoadEnum(String roadStr) {
-        for (RoadEnum road : values()) {
-            if (road.name().equals(roadStr)) {
+        return roadStr == null ? null : BY_NAME.get(roadStr);
+    }
+
+    /**
+     * Returns the road going from one node to another.
+     *
+     * @param origin      origin node
+     * @param destination destination node
+     * @return road connecting the two nodes, or {@code null} if there is none
+     *         (or either node is {@code null})
+     */
+    public static RoadEnum between(NodeEnum origin, NodeEnum destination) {
+        if (origin == null || destination == null)
+            return null;
+        for (RoadEnum road : ROADS_FROM[origin.ordinal()]) {
+            if (road.destination == destination)
                 return road;
-            }
         }
         return null;
     }
 
+    /**
+     * Returns the road name, {@code <origin>_<destination>}.
+     *
+     * @return road name
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Returns the index of the road in {@link #values()}.
+     *
+     * @return road ordinal
+     */
+    public int ordinal() {
+        return ordinal;
+    }
+
     /**
      * Origin of the road.
      *
@@ -104,38 +201,88 @@ public enum RoadEnum {
         return greenLightDuration;
     }
 
+    /**
+     * Number of lanes of this road.
+     *
+     * @return lane count, at least 1
+     */
+    public int getLanes() {
+        return lanes;
+    }
+
+    /**
+     * Returns the lane a vehicle takes to continue to the given node.
+     *
+     * @param next node after the destination of this road, or {@code null}
+     * @return lane index, 0 if the road has a single lane or {@code next} is
+     *         not reachable from the destination
+     */
+    public int laneFor(NodeEnum next) {
+        int movement = getRoadsFromCrossroad(destination).indexOf(between(destination, next));
+        return movement < 0 ? 0 : movement % lanes;
+    }
+
+    /**
+     * Returns the name of a lane: the road name, followed by {@code /L<lane>}
+     * on roads with several lanes.
+     *
+     * @param lane lane index
+     * @return lane name
+     */
+    public String laneName(int lane) {
+        return lanes == 1 ? name : name + "/L" + lane;
+    }
+
+    /**
+     * Road space of this road, shared by the vehicles on it and those
+     * waiting at its signal.
+     *
+     * @return capacity in half car lengths
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
     /**
      * Returns the roads that end at the provided crossroad/node.
      *
      * @param node destination node
-     * @return list of {@link RoadEnum}
+     * @return unmodifiable list of {@link RoadEnum}
      */
     public static List<RoadEnum> getRoadsToCrossroad(NodeEnum node) {
-        List<RoadEnum> roads = new ArrayList<>();
-        for (RoadEnum road : values()) {
-            if (road.destination == node)
-                roads.add(road);
-        }
-        return roads;
+        return ROADS_TO_LISTS.get(node.ordinal());
     }
 
     /**
      * Returns the roads that originate at the provided crossroad/node.
      *
      * @param node origin node
-     * @return list of {@link RoadEnum}
+     * @return unmodifiable list of {@link RoadEnum}
      */
     public static List<RoadEnum> getRoadsFromCrossroad(NodeEnum node) {
-        List<RoadEnum> roads = new ArrayList<>();
-        for (RoadEnum road : values()) {
-            if (road.origin == node)
-                roads.add(road);
-        }
-        return roads;
+        return ROADS_FROM_LISTS.get(node.ordinal());
+    }
+
+    @Override
+    public int compareTo(RoadEnum o) {
+        return Integer.compare(ordinal, o.ordinal);
+    }
+
+    /**
+     * Resolve a deserialized road to the instance of this process.
+     *
+     * @return the canonical road
+     * @throws InvalidObjectException if the road is not in the topology
+     */
+    private Object readResolve() throws InvalidObjectException {
+        RoadEnum road = BY_NAME.get(name);
+        if (road == null)
+            throw new InvalidObjectException("Unknown road " + name);
+        return road;
     }
 
     @Override
     public String toString() {
-        return this.name();
+        return this.name;
     }
-}
\ No newline at end of file
+}
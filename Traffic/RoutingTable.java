@@ -0,0 +1,258 @@
+package Traffic;
+
+import java.util.*;
+import java.util.function.IntSupplier;
+
+import Comunication.Sender;
+import Event.RouteAdvertisement;
+import Node.NodeEnum;
+import Node.NodeType;
+import Utils.LogicalClock;
+import Utils.TimerService;
+import Vehicle.Vehicle;
+
+/**
+ * Congestion-aware routing table of one crossroad (distance-vector).
+ * <p>
+ * For every outgoing road and every exit the table keeps an estimate of the
+ * time from the start of that road to the exit. The estimates start from
+ * the free-flow travel times of the {@link Node.Topology}, computed once per
+ * process, and are then updated incrementally from
+ * {@link RouteAdvertisement}s sent by the downstream crossroads: an
+ * advertisement only touches the exits whose cost changed, and a departing
+ * vehicle is routed by comparing the few outgoing roads for its exit.
+ * <p>
+ * Every {@code routing.intervalMs} (default 1000) the table estimates the
+ * wait on each incoming road from its load and advertises its own costs
+ * upstream, but only to neighbours for which some exit cost moved by more
+ * than {@code routing.thresholdMs} (default 500).
+ */
+public class RoutingTable {
+    private static final long UNREACHABLE = Long.MAX_VALUE;
+    private static final long SERVICE_MS = 1000;
+    private static final long INTERVAL_MS;
+    private static final long THRESHOLD_MS;
+
+    private static final NodeEnum[] EXITS;
+    private static final int[] EXIT_INDEX;
+    private static long[][] freeFlow;
+
+    static {
+        INTERVAL_MS = Long.parseLong(System.getProperty("routing.intervalMs", "1000"));
+        THRESHOLD_MS = Long.parseLong(System.getProperty("routing.thresholdMs", "500"));
+
+        List<NodeEnum> exits = new ArrayList<>();
+        EXIT_INDEX = new int[NodeEnum.count()];
+        Arrays.fill(EXIT_INDEX, -1);
+        for (NodeEnum n : NodeEnum.values()) {
+            if (n.getType() == NodeType.EXIT) {
+                EXIT_INDEX[n.ordinal()] = exits.size();
+                exits.add(n);
+            }
+        }
+        EXITS = exits.toArray(new NodeEnum[0]);
+    }
+
+    private final NodeEnum node;
+    private final LogicalClock clock;
+    private final TimerService timer;
+    private final int phases;
+    private final List<RoadEnum> outgoing;
+    private final List<RoadEnum> incoming;
+    private final IntSupplier[] load;
+
+    private final long[][] viaRoad;
+    private final long[] best;
+    private final long[][] lastSent;
+
+    /**
+     * Create the routing table of a crossroad and start its periodic
+     * advertisements.
+     *
+     * @param node   crossroad owning the table
+     * @param clock  logical clock used for advertisement timestamps
+     * @param timer  timer of the node, used for the periodic refresh
+     * @param phases number of signal phases at the crossroad
+     */
+    public RoutingTable(NodeEnum node, LogicalClock clock, TimerService timer, int phases) {
+        this.node = node;
+        this.clock = clock;
+        this.timer = timer;
+        this.phases = phases;
+        this.outgoing = RoadEnum.getRoadsFromCrossroad(node);
+        this.incoming = RoadEnum.getRoadsToCrossroad(node);
+        this.load = new IntSupplier[this.incoming.size()];
+
+        long[][] free = freeFlow();
+        this.viaRoad = new long[this.outgoing.size()][EXITS.length];
+        this.best = new long[EXITS.length];
+        Arrays.fill(this.best, UNREACHABLE);
+        for (int k = 0; k < this.outgoing.size(); k++) {
+            RoadEnum road = this.outgoing.get(k);
+            for (int e = 0; e < EXITS.length; e++) {
+                this.viaRoad[k][e] = add(road.getTime(), free[e][road.getDestination().ordinal()]);
+                this.best[e] = Math.min(this.best[e], this.viaRoad[k][e]);
+            }
+        }
+        this.lastSent = new long[this.incoming.size()][EXITS.length];
+        for (int j = 0; j < this.incoming.size(); j++) {
+            for (int e = 0; e < EXITS.length; e++) {
+                this.lastSent[j][e] = add(this.incoming.get(j).getTime(), this.best[e]);
+            }
+        }
+        scheduleRefresh();
+    }
+
+    /**
+     * Returns the free-flow time from every node to every exit, computing it
+     * on first use with one reverse Dijkstra per exit.
+     *
+     * @return times in ms, indexed by exit position then node ordinal
+     */
+    private static synchronized long[][] freeFlow() {
+        if (freeFlow != null)
+            return freeFlow;
+        long[][] dist = new long[EXITS.length][NodeEnum.count()];
+        for (int e = 0; e < EXITS.length; e++) {
+            long[] d = dist[e];
+            Arrays.fill(d, UNREACHABLE);
+            d[EXITS[e].ordinal()] = 0L;
+            PriorityQueue<long[]> pending = new PriorityQueue<>(Comparator.comparingLong(a -> a[0]));
+            pending.add(new long[] { 0L, EXITS[e].ordinal() });
+            NodeEnum[] nodes = NodeEnum.values();
+            while (!pending.isEmpty()) {
+                long[] head = pending.poll();
+                int n = (int) head[1];
+                if (head[0] > d[n])
+                    continue;
+                for (RoadEnum road : RoadEnum.getRoadsToCrossroad(nodes[n])) {
+                    int from = road.getOrigin().ordinal();
+                    long via = d[n] + road.getTime();
+                    if (via < d[from]) {
+                        d[from] = via;
+                        pending.add(new long[] { via, from });
+                    }
+                }
+            }
+        }
+        freeFlow = dist;
+        return dist;
+    }
+
+    /**
+     * Adds two costs, keeping {@link #UNREACHABLE} absorbing.
+     *
+     * @param a first cost
+     * @param b second cost
+     * @return the sum, or {@link #UNREACHABLE}
+     */
+    private static long add(long a, long b) {
+        return (a == UNREACHABLE || b == UNREACHABLE) ? UNREACHABLE : a + b;
+    }
+
+    /**
+     * Sets the supplier of the number of vehicles on an incoming road and
+     * waiting at its signal.
+     *
+     * @param road incoming road
+     * @param load vehicle count supplier
+     */
+    public void setLoad(RoadEnum road, IntSupplier load) {
+        this.load[this.incoming.indexOf(road)] = load;
+    }
+
+    /**
+     * Chooses the next node for a departing vehicle: the outgoing road with
+     * the lowest estimated time to the vehicle's exit, not leading back to a
+     * node the vehicle already left.
+     *
+     * @param vehicle departing vehicle
+     * @return next node, or the next node of its path if no road qualifies
+     */
+    public synchronized NodeEnum nextHop(Vehicle vehicle) {
+        int e = EXIT_INDEX[vehicle.getDestination().ordinal()];
+        RoadEnum chosen = null;
+        long chosenCost = UNREACHABLE;
+        for (int k = 0; e >= 0 && k < this.outgoing.size(); k++) {
+            RoadEnum road = this.outgoing.get(k);
+            if (this.viaRoad[k][e] < chosenCost && !vehicle.hasVisited(road.getDestination())) {
+                chosen = road;
+                chosenCost = this.viaRoad[k][e];
+            }
+        }
+        return chosen != null ? chosen.getDestination() : vehicle.findNextNode(this.node);
+    }
+
+    /**
+     * Applies an advertisement from a downstream crossroad, recomputing the
+     * best cost only for the exits whose cost changed.
+     *
+     * @param advertisement received advertisement
+     */
+    public synchronized void onAdvertisement(RouteAdvertisement advertisement) {
+        int k = this.outgoing.indexOf(RoadEnum.between(this.node, advertisement.getNode()));
+        if (k < 0)
+            return;
+        long[] costs = advertisement.getCosts();
+        for (int e = 0; e < EXITS.length && e < costs.length; e++) {
+            long old = this.viaRoad[k][e];
+            if (costs[e] == old)
+                continue;
+            this.viaRoad[k][e] = costs[e];
+            if (costs[e] < this.best[e]) {
+                this.best[e] = costs[e];
+            } else if (old == this.best[e]) {
+                long min = UNREACHABLE;
+                for (long[] via : this.viaRoad)
+                    min = Math.min(min, via[e]);
+                this.best[e] = min;
+            }
+        }
+    }
+
+    /**
+     * Schedules the next refresh on the node's timer.
+     */
+    private void scheduleRefresh() {
+        this.timer.schedule(System.currentTimeMillis() + INTERVAL_MS, this::refresh);
+    }
+
+    /**
+     * Estimates the cost of each incoming road and advertises it upstream
+     * where it changed noticeably. Entrances are not advertised to: they
+     * have a single road and do not route.
+     */
+    private void refresh() {
+        List<RouteAdvertisement> updates = new ArrayList<>();
+        List<NodeEnum> targets = new ArrayList<>();
+        synchronized (this) {
+            for (int j = 0; j < this.incoming.size(); j++) {
+                RoadEnum road = this.incoming.get(j);
+                if (road.getOrigin().getType() != NodeType.CROSSROAD)
+                    continue;
+                int queued = this.load[j] == null ? 0 : this.load[j].getAsInt();
+                long roadCost = road.getTime() + queued * SERVICE_MS * this.phases;
+                long[] costs = new long[EXITS.length];
+                boolean changed = false;
+                for (int e = 0; e < EXITS.length; e++) {
+                    costs[e] = add(roadCost, this.best[e]);
+                    long sent = this.lastSent[j][e];
+                    if (costs[e] == UNREACHABLE || sent == UNREACHABLE
+                            ? costs[e] != sent
+                            : Math.abs(costs[e] - sent) > THRESHOLD_MS) {
+                        changed = true;
+                    }
+                }
+                if (changed) {
+                    this.lastSent[j] = costs;
+                    updates.add(new RouteAdvertisement(this.node, this.clock.tick(), costs));
+                    targets.add(road.getOrigin());
+                }
+            }
+        }
+        for (int i = 0; i < updates.size(); i++) {
+            Sender.sendRouteAdvertisement(updates.get(i), targets.get(i).getPort());
+        }
+        scheduleRefresh();
+    }
+}
@@ -0,0 +1,45 @@
+package Traffic;
+
+/**
+ * Signal control strategies of a crossroad, selected with
+ * {@code -Dsignal.control}.
+ */
+public enum SignalControl {
+    /**
+     * Every phase gets the (weighted) green time of its road.
+     */
+    FIXED,
+    /**
+     * Green is extended while vehicles keep arriving, between a minimum and
+     * a maximum, and phases without waiting vehicles are skipped (see
+     * {@link ActuatedController}).
+     */
+    ACTUATED,
+    /**
+     * Each phase change grants the road with the largest queue relative to
+     * its downstream queues (see {@link MaxPressureController}). Applies to
+     * crossroads with several incoming roads; others use fixed timing.
+     */
+    MAX_PRESSURE,
+    /**
+     * A common cycle with per-crossroad offsets forms green waves along the
+     * heaviest routes (see {@link GreenWave}).
+     */
+    COORDINATED;
+
+    /**
+     * Converts a string to the corresponding strategy, ignoring case.
+     *
+     * @param controlString strategy name (for example "fixed" or
+     *                      "max_pressure")
+     * @return the matching {@link SignalControl} or {@code null} if not found
+     */
+    public static SignalControl toSignalControl(String controlString) {
+        for (SignalControl control : values()) {
+            if (control.name().equalsIgnoreCase(controlString)) {
+                return control;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,21 @@
+package Traffic;
+
+import Utils.EventLoop;
+
+/**
+ * Owner of a signal phase that can be driven by an {@link EventLoop}
+ * instead of by its own thread.
+ */
+public interface SignalPhase {
+
+    /**
+     * Runs one phase on the loop thread. The phase must already be granted
+     * by the crossroad's {@link Utils.PhaseScheduler}. The implementation
+     * schedules its own steps on {@code loop} and runs {@code done} on the
+     * loop once the phase, including the clearance interval, is over.
+     *
+     * @param loop event loop of the crossroad
+     * @param done action to run when the phase ends
+     */
+    void runPhase(EventLoop loop, Runnable done);
+}
@@ -1,9 +1,19 @@
 package Traffic;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import Comunication.Sender;
+import Comunication.SnapshotAgent;
+import Event.EventType;
+import Event.RoadCredit;
 import Event.SignalChangeEvent;
+import Event.VehicleEvent;
 import Node.NodeEnum;
 import Utils.*;
 import Vehicle.Vehicle;
@@ -11,21 +21,88 @@ import Vehicle.Vehicle;
 /**
  * Traffic light controller for a single incoming road.
  * <p>
- * This thread interacts with a {@link RoundRobin} coordinator to acquire
- * a green turn for the associated road. During the green interval it allows
- * vehicles to pass subject to their individual pass times. It emits
- * {@link SignalChangeEvent} notifications when the light turns green and
- * red, and uses {@link Sender} to forward vehicle departures
- * to the next node.
+ * The light owns one phase of the crossroad's {@link PhaseScheduler}. During
+ * the green interval the queue discharges at saturation flow: the first
+ * vehicle enters the junction after a start-up lost time
+ * ({@code signal.lostTimeMs}, default 500) and each following one a
+ * saturation headway ({@code signal.headwayMs}, default 500, scaled by the
+ * vehicle type) after the previous one, so several vehicles can be crossing
+ * at once. A vehicle enters only if it clears the junction before the end of
+ * the clearance interval. The light emits {@link SignalChangeEvent}
+ * notifications when it turns green and red and reports every departure to
+ * the event handler when it happens, through the node's event outbox so it
+ * follows the vehicle's signal arrival; the vehicles themselves are sent to
+ * their next nodes with {@link Sender} in platoons, one
+ * {@link Event.DepartureBatch} per node, each vehicle carrying the time it
+ * cleared the junction. A platoon is sent {@code signal.platoonWindowMs}
+ * (default 1000) after its first vehicle left, on the timer given to
+ * {@link #setTimer(TimerService)}, or earlier when the phase ends.
+ * <p>
+ * On a road with several lanes each lane has its own queue and discharges
+ * on its own, with its own headways, during the road's phase; the vehicle
+ * that can enter first goes first.
+ * <p>
+ * With a {@link RoadCapacity} the first vehicle of a lane only enters once
+ * its next road has room for it, blocking the lane behind it otherwise, and
+ * the road space freed by the vehicles that left is handed back upstream
+ * when the phase ends.
+ * <p>
+ * The light can run as its own thread, blocking on the scheduler and
+ * waiting for {@link #onVehicleReady()}, or be driven by the crossroad's
+ * {@link EventLoop} through {@link #runPhase(EventLoop, Runnable)} and
+ * {@link #onVehicleReady()}. Both modes share the same green/departure/red
+ * steps.
+ * <p>
+ * With a {@link RoutingTable} the next node of a departing vehicle is chosen
+ * by the table instead of taken from the vehicle's path. With a
+ * {@link GreenTiming} (actuated or coordinated control) the green interval
+ * follows it instead of lasting the road's fixed green time.
  */
-public class TrafficLight extends Thread {
+public class TrafficLight extends Thread implements SignalPhase {
     private static final long TIME_TO_PASS_MS = 1000;
+    private static final long SATURATION_HEADWAY_MS;
+    private static final long STARTUP_LOST_MS;
+    static final long CLEARANCE_MS = 200;
+    private static final long BLOCKED_RETRY_MS = 100;
+    private static final long PLATOON_WINDOW_MS;
+
+    static {
+        SATURATION_HEADWAY_MS = Long.parseLong(System.getProperty("signal.headwayMs", "500"));
+        STARTUP_LOST_MS = Long.parseLong(System.getProperty("signal.lostTimeMs", "500"));
+        PLATOON_WINDOW_MS = Long.parseLong(System.getProperty("signal.platoonWindowMs", "1000"));
+    }
 
-    private final SynchronizedQueue<Vehicle> vehicleQueue;
+    private final List<SynchronizedQueue<Vehicle>> lanes;
     private final RoadEnum road;
     private final LogicalClock clock;
-    private final RoundRobin roundRobin;
+    private final PhaseScheduler scheduler;
+    private final int phase;
     private final NodeEnum node;
+    private final SnapshotAgent snapshotAgent;
+    private final RoutingTable routingTable;
+    private GreenTiming timing;
+    private RoadCapacity capacity;
+    private int freedUnits = 0;
+
+    private long greenEndTime;
+    private final long[] nextEntryTime;
+    private final long[] laneEntry;
+    private long plannedEntry;
+    private NodeEnum plannedHop;
+    private boolean blocked;
+    private final Object arrivals = new Object();
+    private long departed = 0L;
+    private int servedThisGreen;
+    private final Map<NodeEnum, List<Vehicle>> discharged = new LinkedHashMap<>();
+    private final Map<NodeEnum, Long> platoonStart = new HashMap<>();
+    private final Object platoons = new Object();
+    private TimerService timer;
+    private int dischargedCount = 0;
+    private EventLoop loop;
+    private Runnable done;
+    private long cycle = 0L;
+    private boolean waiting = false;
+    private boolean timeoutArmed = false;
 
     /**
      * Create a traffic light controller for a specific road.
@@ -33,41 +110,148 @@ public class TrafficLight extends Thread {
      * @param vehicleQueue queue of vehicles waiting at the light
      * @param road         the {@link RoadEnum} this controller manages
      * @param clock        logical clock used for event timestamps
-     * @param roundRobin   round-robin coordinator for turn scheduling
+     * @param scheduler     phase scheduler of the crossroad
+     * @param phase         phase of {@code scheduler} owned by this light
+     * @param snapshotAgent snapshot participant of the node
+     */
+    public TrafficLight(SynchronizedQueue<Vehicle> vehicleQueue,
+            RoadEnum road, LogicalClock clock, PhaseScheduler scheduler, int phase,
+            SnapshotAgent snapshotAgent) {
+        this(vehicleQueue, road, clock, scheduler, phase, snapshotAgent, null);
+    }
+
+    /**
+     * Create a traffic light controller that routes departing vehicles
+     * through a routing table.
+     *
+     * @param vehicleQueue  queue of vehicles waiting at the light
+     * @param road          the {@link RoadEnum} this controller manages
+     * @param clock         logical clock used for event timestamps
+     * @param scheduler     phase scheduler of the crossroad
+     * @param phase         phase of {@code scheduler} owned by this light
+     * @param snapshotAgent snapshot participant of the node
+     * @param routingTable  routing table of the crossroad, or {@code null} to
+     *                      follow the vehicle paths
      */
     public TrafficLight(SynchronizedQueue<Vehicle> vehicleQueue,
-            RoadEnum road, LogicalClock clock, RoundRobin roundRobin) {
-        this.vehicleQueue = vehicleQueue;
+            RoadEnum road, LogicalClock clock, PhaseScheduler scheduler, int phase,
+            SnapshotAgent snapshotAgent, RoutingTable routingTable) {
+        this(Collections.singletonList(vehicleQueue), road, clock, scheduler, phase, snapshotAgent, routingTable);
+    }
+
+    /**
+     * Create a traffic light controller for a road with one queue per lane.
+     *
+     * @param lanes         queues of vehicles waiting at the light, indexed
+     *                      by lane
+     * @param road          the {@link RoadEnum} this controller manages
+     * @param clock         logical clock used for event timestamps
+     * @param scheduler     phase scheduler of the crossroad
+     * @param phase         phase of {@code scheduler} owned by this light
+     * @param snapshotAgent snapshot participant of the node
+     * @param routingTable  routing table of the crossroad, or {@code null} to
+     *                      follow the vehicle paths
+     */
+    public TrafficLight(List<SynchronizedQueue<Vehicle>> lanes,
+            RoadEnum road, LogicalClock clock, PhaseScheduler scheduler, int phase,
+            SnapshotAgent snapshotAgent, RoutingTable routingTable) {
+        this.lanes = lanes;
+        this.nextEntryTime = new long[lanes.size()];
+        this.laneEntry = new long[lanes.size()];
         this.road = road;
         this.clock = clock;
-        this.roundRobin = roundRobin;
+        this.scheduler = scheduler;
+        this.phase = phase;
         this.node = road.getDestination();
+        this.snapshotAgent = snapshotAgent;
+        this.routingTable = routingTable;
+        for (int lane = 0; lane < lanes.size(); lane++) {
+            snapshotAgent.register(road.laneName(lane) + " signal", road, lanes.get(lane)::size);
+        }
+        snapshotAgent.register(road + " discharged", road, () -> this.dischargedCount);
     }
 
     /**
-     * Main loop: wait for the round-robin turn, announce green, allow
-     * vehicles to pass during the green interval, announce red, then
-     * release the turn and repeat indefinitely.
+     * Replaces the fixed green time of the light. Must be called before the
+     * light starts.
+     *
+     * @param timing green timing of this light, or {@code null} for the
+     *               road's fixed green time
      */
-    @Override
-    public void run() {
-        while (true) {
-            try {
-                this.roundRobin.esperarTurno(RoadEnum.getRoadsToCrossroad(this.node).indexOf(this.road));
+    public void setTiming(GreenTiming timing) {
+        this.timing = timing;
+    }
 
-                long greenStartTime = System.currentTimeMillis();
-                long greenEndTime = greenStartTime + this.road.getGreenLightDuration();
+    /**
+     * Limits departures to the room on the next roads and makes the light
+     * hand back the space freed on its own road. Must be called before the
+     * light starts.
+     *
+     * @param capacity road space of the roads leaving the crossroad
+     */
+    public void setCapacity(RoadCapacity capacity) {
+        this.capacity = capacity;
+    }
 
-                System.out.println("Traffic Light GREEN for: " + this.road);
-                Sender.sendToEventHandler(new SignalChangeEvent(this.road, this.clock.get(), "Green"));
+    /**
+     * Sets the timer that closes platoons once their window expires. Closing
+     * a platoon sends it, so the timer's thread must be allowed to block on
+     * the network: the crossroad's event loop or a loop of its own, not the
+     * shared timing wheel. Without a timer, platoons are only closed by a
+     * later departure or the end of the phase. Must be called before the
+     * light starts.
+     *
+     * @param timer timer running the platoon windows
+     */
+    public void setTimer(TimerService timer) {
+        this.timer = timer;
+    }
 
-                handleGreenLight(greenEndTime);
+    /**
+     * Returns the number of vehicles waiting at the light, over all lanes.
+     *
+     * @return vehicle count
+     */
+    public int getQueued() {
+        int queued = 0;
+        for (SynchronizedQueue<Vehicle> lane : this.lanes) {
+            queued += lane.size();
+        }
+        return queued;
+    }
 
-                System.out.println("Traffic Light RED for: " + this.road);
-                Sender.sendToEventHandler(new SignalChangeEvent(this.road, this.clock.get(), "Red"));
+    /**
+     * Tells whether a vehicle is waiting at the head of some lane. Unlike
+     * {@link #getQueued()} this only counts vehicles the light can already
+     * see, not ones still being added to a lane.
+     *
+     * @return true if some lane has a head vehicle
+     */
+    private boolean hasWaiting() {
+        for (SynchronizedQueue<Vehicle> lane : this.lanes) {
+            if (lane.peek() != null)
+                return true;
+        }
+        return false;
+    }
 
-                Thread.sleep(200);
-                this.roundRobin.terminarTurno();
+    /**
+     * Main loop (thread mode): wait for the phase, announce green, allow
+     * vehicles to pass during the (weighted) green interval, announce red,
+     * send the discharged vehicles after the clearance interval, then
+     * release the phase and repeat indefinitely.
+     */
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                this.scheduler.awaitPhase(this.phase);
+                beginGreen();
+                handleGreenLight();
+                endGreen();
+                Thread.sleep(CLEARANCE_MS);
+                sendDischarged();
+                this.scheduler.release();
             } catch (InterruptedException e) {
                 e.printStackTrace();
             } catch (Exception e) {
@@ -77,49 +261,398 @@ public class TrafficLight extends Thread {
     }
 
     /**
-     * Allow vehicles to pass while the green interval remains. Vehicles
-     * are permitted only if their individual pass time fits within the
-     * remaining green window.
+     * Allow vehicles to enter the junction while the green interval remains,
+     * each at its saturation-flow entry time, as long as it clears the
+     * junction by the end of the clearance interval and its next road has
+     * room for it. With every lane empty the thread blocks until a vehicle
+     * arrives or the green interval ends; with the next roads full, it checks
+     * again every {@value #BLOCKED_RETRY_MS} ms.
      *
-     * @param greenEndTime absolute system time in ms when green ends
-     * @throws InterruptedException if the thread is interrupted while sleeping
+     * @throws InterruptedException if the thread is interrupted while waiting
      */
-    private void handleGreenLight(long greenEndTime) throws InterruptedException {
+    private void handleGreenLight() throws InterruptedException {
         while (true) {
             long now = System.currentTimeMillis();
-            if (now >= greenEndTime) {
+            extendGreen(now);
+            if (now >= this.greenEndTime) {
                 break;
             }
-            Vehicle vehicle = this.vehicleQueue.peek();
-            if (vehicle == null) {
-                Thread.sleep(50);
-                continue;
-            }
-            long passTimeMs = vehicle.getType().getTimeToPass(TIME_TO_PASS_MS);
-            if (now + passTimeMs > greenEndTime) {
-                Thread.sleep(greenEndTime - now);
+            int lane = nextLane(now);
+            if (lane >= 0) {
+                long entry = this.plannedEntry;
+                NodeEnum nextNode = this.plannedHop;
+                Thread.sleep(Math.max(0L, entry - System.currentTimeMillis()));
+                handleDeparture(lane, entry, nextNode);
+            } else if (this.blocked) {
+                Thread.sleep(Math.min(BLOCKED_RETRY_MS, this.greenEndTime - now));
+            } else if (hasWaiting()) {
+                Thread.sleep(this.greenEndTime - now);
                 break;
+            } else {
+                awaitVehicle(this.greenEndTime);
             }
-            Thread.sleep(passTimeMs);
-            handleDeparture();
         }
     }
 
     /**
-     * Process a departing vehicle: remove it from the queue, determine the
-     * next node from the vehicle path and send a network departure message.
+     * Wait (thread mode) until some lane has a vehicle or the deadline
+     * passes.
+     *
+     * @param deadline time in ms to stop waiting at
+     * @throws InterruptedException if the thread is interrupted while waiting
      */
-    private void handleDeparture() {
-        Vehicle vehicle = this.vehicleQueue.remove();
-        List<NodeEnum> path = vehicle.getPath().getPath();
-        int idx = path.indexOf(this.node);
+    private void awaitVehicle(long deadline) throws InterruptedException {
+        synchronized (this.arrivals) {
+            long remaining;
+            while (!hasWaiting() && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                this.arrivals.wait(remaining);
+            }
+        }
+    }
 
-        if (idx == -1 || idx + 1 >= path.size()) {
-            System.err.println("TrafficLight: caminho inválido para veículo " + vehicle.getId());
+    /**
+     * Runs one green phase on the event loop (loop mode).
+     *
+     * @param loop event loop of the crossroad
+     * @param done action to run after red and the clearance interval
+     */
+    @Override
+    public void runPhase(EventLoop loop, Runnable done) {
+        this.loop = loop;
+        this.done = done;
+        this.cycle++;
+        this.timeoutArmed = false;
+        beginGreen();
+        serve();
+    }
+
+    /**
+     * Notifies the light that a vehicle was added to one of its lanes. In
+     * loop mode it must be called on the loop thread.
+     */
+    public void onVehicleReady() {
+        if (this.loop == null) {
+            synchronized (this.arrivals) {
+                this.arrivals.notifyAll();
+            }
+            return;
+        }
+        if (this.waiting) {
+            this.waiting = false;
+            serve();
+        }
+    }
+
+    /**
+     * Loop-mode step: let the next vehicle enter at its saturation-flow
+     * entry time, check again shortly if the next roads are full, wait for a
+     * vehicle if every lane is empty, or end the phase.
+     */
+    private void serve() {
+        long now = System.currentTimeMillis();
+        extendGreen(now);
+        if (now >= this.greenEndTime) {
+            finishPhase();
+            return;
+        }
+        int lane = nextLane(now);
+        if (lane >= 0) {
+            long entry = this.plannedEntry;
+            NodeEnum nextNode = this.plannedHop;
+            this.loop.schedule(entry, () -> {
+                handleDeparture(lane, entry, nextNode);
+                serve();
+            });
+        } else if (this.blocked) {
+            this.loop.schedule(Math.min(now + BLOCKED_RETRY_MS, this.greenEndTime), this::serve);
+        } else if (hasWaiting()) {
+            this.loop.schedule(this.greenEndTime, this::finishPhase);
         } else {
-            NodeEnum nextNode = path.get(idx + 1);
-            Sender.sendVehicleDeparture(vehicle, nextNode.getPort(), this.node, this.clock);
+            this.waiting = true;
+            if (!this.timeoutArmed) {
+                this.timeoutArmed = true;
+                long c = this.cycle;
+                this.loop.schedule(this.greenEndTime, () -> onGreenTimeout(c));
+            }
+        }
+    }
+
+    /**
+     * Loop-mode end of green while waiting for a vehicle.
+     *
+     * @param c cycle the timeout was armed in
+     */
+    private void onGreenTimeout(long c) {
+        if (c != this.cycle || !this.waiting) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        extendGreen(now);
+        if (now < this.greenEndTime) {
+            this.loop.schedule(this.greenEndTime, () -> onGreenTimeout(c));
+            return;
         }
-        System.out.println("Vehicle " + vehicle.getId() + " passed GREEN at TL: " + this.road);
+        this.waiting = false;
+        finishPhase();
+    }
+
+    /**
+     * Loop-mode end of the phase: announce red, then send the discharged
+     * vehicles and hand over after the clearance interval.
+     */
+    private void finishPhase() {
+        endGreen();
+        this.loop.schedule(System.currentTimeMillis() + CLEARANCE_MS, () -> {
+            sendDischarged();
+            this.done.run();
+        });
+    }
+
+    /**
+     * Start the green interval of the granted phase and announce it.
+     */
+    private void beginGreen() {
+        long greenStartTime = this.scheduler.getPhaseStart(this.phase);
+        this.greenEndTime = this.timing != null
+                ? this.timing.beginGreen(greenStartTime)
+                : greenStartTime + this.scheduler.greenTime(this.phase, this.road.getGreenLightDuration());
+        Arrays.fill(this.nextEntryTime, greenStartTime + STARTUP_LOST_MS);
+        this.servedThisGreen = 0;
+
+        System.out.println("Traffic Light GREEN for: " + this.road
+                + " (hand-off " + this.scheduler.getLastHandoffMicros() + " us)");
+        Sender.sendToEventHandler(new SignalChangeEvent(this.road, this.clock.get(), "Green"));
+    }
+
+    /**
+     * Announce the end of the green interval.
+     */
+    private void endGreen() {
+        System.out.println("Traffic Light RED for: " + this.road
+                + " (" + this.servedThisGreen + " vehicles discharged)");
+        Sender.sendToEventHandler(new SignalChangeEvent(this.road, this.clock.get(), "Red"));
+    }
+
+    /**
+     * Let the green timing move the end of green according to the queue and
+     * the arrivals. No-op with fixed timing.
+     *
+     * @param now current time in ms
+     */
+    private void extendGreen(long now) {
+        if (this.timing == null)
+            return;
+        long headPass = -1L;
+        for (int lane = 0; lane < this.lanes.size(); lane++) {
+            Vehicle head = this.lanes.get(lane).peek();
+            if (head == null)
+                continue;
+            long pass = Math.max(0L, this.nextEntryTime[lane] - now)
+                    + head.getType().getTimeToPass(TIME_TO_PASS_MS) - CLEARANCE_MS;
+            headPass = headPass < 0 ? pass : Math.min(headPass, pass);
+        }
+        this.greenEndTime = this.timing.extend(now, this.greenEndTime, headPass, this.departed + getQueued());
+    }
+
+    /**
+     * Compute when the first vehicle of a lane enters the junction: not
+     * before the start-up lost time nor one saturation headway after the
+     * previous vehicle of the lane.
+     *
+     * @param lane lane index
+     * @param now  current time in ms
+     * @return entry time in ms, or -1 if the lane is empty or its first
+     *         vehicle cannot enter during the green and clear the junction by
+     *         the end of the clearance interval
+     */
+    private long entryTime(int lane, long now) {
+        Vehicle vehicle = this.lanes.get(lane).peek();
+        if (vehicle == null)
+            return -1L;
+        long entry = Math.max(now, this.nextEntryTime[lane]);
+        long passTimeMs = vehicle.getType().getTimeToPass(TIME_TO_PASS_MS);
+        return (entry >= this.greenEndTime || entry + passTimeMs > this.greenEndTime + CLEARANCE_MS)
+                ? -1L : entry;
+    }
+
+    /**
+     * Choose the lane whose first vehicle enters next, taking the room for it
+     * on its next road. Lanes whose next road is full are passed over, and
+     * {@code blocked} is set. On success the entry time and the next node
+     * are left in {@code plannedEntry} and {@code plannedHop}.
+     *
+     * @param now current time in ms
+     * @return lane index, or -1 if no vehicle can enter
+     */
+    private int nextLane(long now) {
+        this.blocked = false;
+        for (int lane = 0; lane < this.lanes.size(); lane++) {
+            this.laneEntry[lane] = entryTime(lane, now);
+        }
+        while (true) {
+            int best = -1;
+            for (int lane = 0; lane < this.lanes.size(); lane++) {
+                if (this.laneEntry[lane] >= 0 && (best < 0 || this.laneEntry[lane] < this.laneEntry[best]))
+                    best = lane;
+            }
+            if (best < 0)
+                return -1;
+            Vehicle head = this.lanes.get(best).peek();
+            NodeEnum nextNode = nextHop(head);
+            if (reserve(head, nextNode)) {
+                this.plannedEntry = this.laneEntry[best];
+                this.plannedHop = nextNode;
+                return best;
+            }
+            this.blocked = true;
+            this.laneEntry[best] = -1L;
+        }
+    }
+
+    /**
+     * Determine the next node of a vehicle: the one its lane leads to, if
+     * that is a road out of this node, or else from the routing table or the
+     * vehicle path.
+     *
+     * @param vehicle vehicle about to depart
+     * @return next node, or {@code null} if the path is invalid
+     */
+    private NodeEnum nextHop(Vehicle vehicle) {
+        NodeEnum laneHop = vehicle.getNextHop();
+        if (laneHop != null && RoadEnum.between(this.node, laneHop) != null)
+            return laneHop;
+        return this.routingTable != null
+                ? this.routingTable.nextHop(vehicle)
+                : vehicle.findNextNode(this.node);
+    }
+
+    /**
+     * Take the room of a vehicle on the road to its next node.
+     *
+     * @param vehicle  vehicle about to depart
+     * @param nextNode its next node, or {@code null}
+     * @return false if the road is full
+     */
+    private boolean reserve(Vehicle vehicle, NodeEnum nextNode) {
+        return this.capacity == null || nextNode == null
+                || this.capacity.tryAcquire(RoadEnum.between(this.node, nextNode), vehicle);
+    }
+
+    /**
+     * Process a vehicle entering the junction: remove it from the queue,
+     * record the hop and the time it will clear the junction, report the
+     * departure and add the vehicle to the platoon to its next node, sending
+     * that platoon first if it is older than the platoon window. Removal and
+     * hand-over to the platoon form one snapshot transfer.
+     *
+     * @param lane     lane the vehicle leaves from
+     * @param entry    time the vehicle enters the junction in ms
+     * @param nextNode next node of the vehicle, or {@code null} if its path
+     *                 is invalid
+     */
+    private void handleDeparture(int lane, long entry, NodeEnum nextNode) {
+        Vehicle vehicle;
+        this.snapshotAgent.beginTransfer();
+        try {
+            vehicle = this.lanes.get(lane).remove();
+            this.departed++;
+            this.servedThisGreen++;
+            this.freedUnits += vehicle.getType().getLength();
+            this.nextEntryTime[lane] = entry + vehicle.getType().getTimeToPass(SATURATION_HEADWAY_MS);
+
+            if (nextNode == null) {
+                System.err.println("TrafficLight: caminho inválido para veículo " + vehicle.getId());
+            } else {
+                vehicle.recordHop(this.node);
+                vehicle.setDepartureTime(entry + vehicle.getType().getTimeToPass(TIME_TO_PASS_MS));
+                Sender.postToEventHandler(
+                        new VehicleEvent(EventType.VEHICLE_DEPARTURE, this.node, this.clock.tick(), vehicle));
+                addToPlatoon(nextNode, vehicle, entry);
+            }
+        } finally {
+            this.snapshotAgent.endTransfer();
+        }
+        System.out.println("Vehicle " + vehicle.getId() + " passed GREEN at TL: " + this.road.laneName(lane));
+    }
+
+    /**
+     * Hand back the road space freed during the last green upstream, then
+     * send the platoons still open to their next nodes, in one snapshot
+     * transfer.
+     */
+    private void sendDischarged() {
+        if (this.capacity != null && this.freedUnits > 0) {
+            Sender.sendRoadCredit(new RoadCredit(this.node, this.clock.tick(), this.freedUnits),
+                    this.road.getOrigin().getPort());
+            this.freedUnits = 0;
+        }
+        this.snapshotAgent.beginTransfer();
+        try {
+            synchronized (this.platoons) {
+                for (NodeEnum next : new ArrayList<>(this.discharged.keySet())) {
+                    sendPlatoon(next);
+                }
+            }
+        } finally {
+            this.snapshotAgent.endTransfer();
+        }
+    }
+
+    /**
+     * Add a departed vehicle to the platoon to its next node. A platoon
+     * older than the window is sent first; a new platoon gets a timer that
+     * sends it when its window expires. Must be called within a snapshot
+     * transfer.
+     *
+     * @param next    next node of the vehicle
+     * @param vehicle departed vehicle
+     * @param entry   time the vehicle entered the junction in ms
+     */
+    private void addToPlatoon(NodeEnum next, Vehicle vehicle, long entry) {
+        synchronized (this.platoons) {
+            Long start = this.platoonStart.get(next);
+            if (start != null && entry - start > PLATOON_WINDOW_MS)
+                sendPlatoon(next);
+            if (this.platoonStart.putIfAbsent(next, entry) == null && this.timer != null)
+                this.timer.schedule(entry + PLATOON_WINDOW_MS, () -> closePlatoon(next, entry));
+            this.discharged.computeIfAbsent(next, n -> new ArrayList<>()).add(vehicle);
+            this.dischargedCount++;
+        }
+    }
+
+    /**
+     * Timer action sending a platoon whose window expired, unless it was
+     * already sent. Runs on the thread of the timer given to
+     * {@link #setTimer(TimerService)}, which may block on the send.
+     *
+     * @param next  node the platoon is bound for
+     * @param start time its first vehicle entered the junction in ms
+     */
+    private void closePlatoon(NodeEnum next, long start) {
+        this.snapshotAgent.beginTransfer();
+        try {
+            synchronized (this.platoons) {
+                Long open = this.platoonStart.get(next);
+                if (open != null && open == start)
+                    sendPlatoon(next);
+            }
+        } finally {
+            this.snapshotAgent.endTransfer();
+        }
+    }
+
+    /**
+     * Send the open platoon to a node in one message. Must be called within
+     * a snapshot transfer, holding the platoon lock.
+     *
+     * @param next node the platoon is bound for
+     */
+    private void sendPlatoon(NodeEnum next) {
+        List<Vehicle> platoon = this.discharged.remove(next);
+        this.platoonStart.remove(next);
+        if (platoon == null)
+            return;
+        Sender.sendDepartureBatch(platoon, next.getPort(), this.node, this.clock);
+        this.dischargedCount -= platoon.size();
     }
 }
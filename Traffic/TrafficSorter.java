@@ -1,5 +1,6 @@
 package Traffic;
 
+import Comunication.SnapshotAgent;
 import Utils.SynchronizedQueue;
 import Vehicle.*;
 
@@ -16,12 +17,22 @@ import Node.NodeEnum;
  * incoming road the vehicle arrived on. It then forwards the vehicle to
  * the appropriate {@link Utils.SynchronizedQueue} associated with that
  * {@link RoadEnum} so that local pass-through handlers or traffic lights
- * can process them.
+ * can process them. Each move is one {@link SnapshotAgent} transfer.
+ * <p>
+ * On a road with several lanes the sorter also chooses the vehicle's next
+ * node (from the routing table, if any, or from its path) and puts the
+ * vehicle in the lane leading there ({@link RoadEnum#laneFor(NodeEnum)}).
+ * <p>
+ * Vehicles that arrived together, such as a platoon from an upstream
+ * signal, are sorted together: every waiting vehicle is taken in one
+ * transfer and each destination queue receives its share at once.
  */
 public class TrafficSorter extends Thread {
-    private Map<RoadEnum, SynchronizedQueue<Vehicle>> trafficQueues;
+    private Map<RoadEnum, List<SynchronizedQueue<Vehicle>>> laneQueues;
     private SynchronizedQueue<Vehicle> vehiclesToSort;
     private NodeEnum node;
+    private SnapshotAgent snapshotAgent;
+    private RoutingTable routingTable;
 
     /**
      * Create a TrafficSorter.
@@ -29,12 +40,48 @@ public class TrafficSorter extends Thread {
      * @param trafficQueues  map from {@link RoadEnum} to destination queues
      * @param vehiclesToSort shared queue with newly arrived vehicles
      * @param node           the node where sorting occurs
+     * @param snapshotAgent  snapshot participant of the node
      */
     public TrafficSorter(Map<RoadEnum, SynchronizedQueue<Vehicle>> trafficQueues,
-            SynchronizedQueue<Vehicle> vehiclesToSort, NodeEnum node) {
-        this.trafficQueues = trafficQueues;
+            SynchronizedQueue<Vehicle> vehiclesToSort, NodeEnum node, SnapshotAgent snapshotAgent) {
+        this(singleLanes(trafficQueues), vehiclesToSort, node, snapshotAgent, null);
+    }
+
+    /**
+     * Create a TrafficSorter for roads with one queue per lane.
+     *
+     * @param laneQueues     map from {@link RoadEnum} to the queues of its
+     *                       lanes, indexed by lane
+     * @param vehiclesToSort shared queue with newly arrived vehicles
+     * @param node           the node where sorting occurs
+     * @param snapshotAgent  snapshot participant of the node
+     * @param routingTable   routing table of the node, or {@code null} to
+     *                       follow the vehicle paths
+     */
+    public TrafficSorter(Map<RoadEnum, List<SynchronizedQueue<Vehicle>>> laneQueues,
+            SynchronizedQueue<Vehicle> vehiclesToSort, NodeEnum node, SnapshotAgent snapshotAgent,
+            RoutingTable routingTable) {
+        this.laneQueues = laneQueues;
         this.vehiclesToSort = vehiclesToSort;
         this.node = node;
+        this.snapshotAgent = snapshotAgent;
+        this.routingTable = routingTable;
+        snapshotAgent.register(node + " sorting", null, vehiclesToSort::size);
+    }
+
+    /**
+     * Wrap per-road queues as single-lane roads.
+     *
+     * @param trafficQueues map from road to its queue
+     * @return map from road to a one-element lane list
+     */
+    private static Map<RoadEnum, List<SynchronizedQueue<Vehicle>>> singleLanes(
+            Map<RoadEnum, SynchronizedQueue<Vehicle>> trafficQueues) {
+        Map<RoadEnum, List<SynchronizedQueue<Vehicle>>> lanes = new HashMap<>();
+        for (Map.Entry<RoadEnum, SynchronizedQueue<Vehicle>> e : trafficQueues.entrySet()) {
+            lanes.put(e.getKey(), Collections.singletonList(e.getValue()));
+        }
+        return lanes;
     }
 
     /**
@@ -45,12 +92,74 @@ public class TrafficSorter extends Thread {
     @Override
     public void run() {
         while (true) {
-            Vehicle vehicle = this.vehiclesToSort.remove();
-            System.out.println("[TrafficSorter " + this.node.toString() + "] Sorting vehicle " + vehicle.getId());
-            NodeEnum previousNode = vehicle.findPreviousNode(this.node);
-            RoadEnum road = RoadEnum.toRoadEnum(previousNode.toString() + "_" + this.node.toString());
-            this.trafficQueues.get(road).add(vehicle);
+            try {
+                this.vehiclesToSort.awaitNonEmpty();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            this.sortAvailable();
         }
 
     }
+
+    /**
+     * Sorts every vehicle currently waiting, without blocking. Used when the
+     * sorter is driven by the crossroad's event loop instead of its own
+     * thread.
+     */
+    public void drain() {
+        while (this.vehiclesToSort.size() > 0) {
+            this.sortAvailable();
+        }
+    }
+
+    /**
+     * Moves every waiting vehicle to the queue of the road it arrived on,
+     * and of its lane on multi-lane roads, as one snapshot transfer. The
+     * vehicles bound for the same queue are added to it together, in
+     * arrival order.
+     */
+    private void sortAvailable() {
+        List<Vehicle> arrived = new ArrayList<>();
+        Map<SynchronizedQueue<Vehicle>, List<Vehicle>> sorted = new LinkedHashMap<>();
+        this.snapshotAgent.beginTransfer();
+        try {
+            if (this.vehiclesToSort.drainTo(arrived) == 0)
+                return;
+            for (Vehicle vehicle : arrived) {
+                System.out.println("[TrafficSorter " + this.node.toString() + "] Sorting vehicle " + vehicle.getId());
+                sorted.computeIfAbsent(queueFor(vehicle), q -> new ArrayList<>()).add(vehicle);
+            }
+            for (Map.Entry<SynchronizedQueue<Vehicle>, List<Vehicle>> e : sorted.entrySet()) {
+                e.getKey().addAll(e.getValue());
+            }
+        } finally {
+            this.snapshotAgent.endTransfer();
+        }
+    }
+
+    /**
+     * Chooses the queue of a vehicle: the one of the road it arrived on or,
+     * on a multi-lane road, of the lane leading to its next node. The lane
+     * and next node are recorded in the vehicle.
+     *
+     * @param vehicle vehicle to sort
+     * @return destination queue
+     */
+    private SynchronizedQueue<Vehicle> queueFor(Vehicle vehicle) {
+        NodeEnum previousNode = vehicle.findPreviousNode(this.node);
+        RoadEnum road = RoadEnum.between(previousNode, this.node);
+        List<SynchronizedQueue<Vehicle>> lanes = this.laneQueues.get(road);
+        if (lanes.size() == 1) {
+            vehicle.setLane(0, null);
+            return lanes.get(0);
+        }
+        NodeEnum next = this.routingTable != null
+                ? this.routingTable.nextHop(vehicle)
+                : vehicle.findNextNode(this.node);
+        int lane = road.laneFor(next);
+        vehicle.setLane(lane, next);
+        return lanes.get(lane);
+    }
 }
@@ -0,0 +1,91 @@
+package Utils;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Weighted random choice in constant time (Walker's alias method).
+ * <p>
+ * The table is built once from the weights of a fixed set of items. Each of
+ * the {@code n} columns holds one item with a probability of being kept and
+ * an alias taken otherwise, so a draw costs one uniform number, one
+ * multiplication and one comparison, whatever the number of items and
+ * without allocating.
+ *
+ * @param <E> type of the items
+ */
+public class AliasTable<E> {
+    private final Object[] items;
+    private final double[] keep;
+    private final int[] alias;
+
+    /**
+     * Builds the table.
+     *
+     * @param items   items to choose from
+     * @param weights non-negative weight of each item, at least one positive
+     * @throws IllegalArgumentException if the sizes differ, a weight is
+     *                                  negative or all weights are zero
+     */
+    public AliasTable(List<E> items, double[] weights) {
+        int n = items.size();
+        if (n == 0 || weights.length != n)
+            throw new IllegalArgumentException("need one weight per item");
+        double total = 0;
+        for (double w : weights) {
+            if (w < 0)
+                throw new IllegalArgumentException("negative weight " + w);
+            total += w;
+        }
+        if (total <= 0)
+            throw new IllegalArgumentException("all weights are zero");
+
+        this.items = items.toArray();
+        this.keep = new double[n];
+        this.alias = new int[n];
+        double[] scaled = new double[n];
+        Deque<Integer> small = new ArrayDeque<>();
+        Deque<Integer> large = new ArrayDeque<>();
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weights[i] * n / total;
+            (scaled[i] < 1.0 ? small : large).push(i);
+        }
+        while (!small.isEmpty() && !large.isEmpty()) {
+            int s = small.pop();
+            int l = large.pop();
+            this.keep[s] = scaled[s];
+            this.alias[s] = l;
+            scaled[l] -= 1.0 - scaled[s];
+            (scaled[l] < 1.0 ? small : large).push(l);
+        }
+        while (!large.isEmpty())
+            this.keep[large.pop()] = 1.0;
+        while (!small.isEmpty())
+            this.keep[small.pop()] = 1.0;
+    }
+
+    /**
+     * Draws an item. The integer part of {@code u * n} picks the column and
+     * the fractional part decides between its item and its alias.
+     *
+     * @param u uniform random number in [0, 1)
+     * @return chosen item
+     */
+    @SuppressWarnings("unchecked")
+    public E sample(double u) {
+        double x = u * this.keep.length;
+        int column = Math.min((int) x, this.keep.length - 1);
+        int chosen = x - column < this.keep[column] ? column : this.alias[column];
+        return (E) this.items[chosen];
+    }
+
+    /**
+     * Returns the number of items.
+     *
+     * @return item count
+     */
+    public int size() {
+        return this.keep.length;
+    }
+}
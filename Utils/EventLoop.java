@@ -0,0 +1,115 @@
+package Utils;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single-threaded executor of timed actions.
+ * <p>
+ * Actions are kept in one priority queue ordered by deadline (and by
+ * submission order for equal deadlines) and run one at a time on the loop
+ * thread, so the components driven by a loop need no locking between
+ * themselves. Other threads submit actions with {@link #execute(Runnable)}
+ * or {@link #schedule(long, Runnable)}; these go through a lock-free queue
+ * and unpark the loop. Between actions the loop parks until the earliest
+ * deadline.
+ */
+public class EventLoop extends Thread implements TimerService {
+    private final PriorityQueue<Action> actions = new PriorityQueue<>();
+    private final ConcurrentLinkedQueue<Action> incoming = new ConcurrentLinkedQueue<>();
+    private long sequence = 0L;
+
+    /**
+     * Create an event loop. The loop thread must be started with
+     * {@link #start()}.
+     *
+     * @param name name of the loop thread
+     */
+    public EventLoop(String name) {
+        super(name);
+    }
+
+    /**
+     * Runs an action on the loop thread as soon as possible.
+     *
+     * @param action action to run
+     */
+    public void execute(Runnable action) {
+        schedule(0L, action);
+    }
+
+    /**
+     * Runs an action on the loop thread once the deadline is reached. May be
+     * called from any thread.
+     *
+     * @param deadlineMillis absolute deadline in ms
+     * @param action         action to run
+     */
+    @Override
+    public void schedule(long deadlineMillis, Runnable action) {
+        incoming.add(new Action(deadlineMillis, action));
+        if (Thread.currentThread() != this)
+            LockSupport.unpark(this);
+    }
+
+    /**
+     * Loop: take submitted actions, run every action that is due, then park
+     * until the earliest remaining deadline.
+     */
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                Action a;
+                while ((a = incoming.poll()) != null) {
+                    a.sequence = sequence++;
+                    actions.add(a);
+                }
+
+                long now = System.currentTimeMillis();
+                Action head = actions.peek();
+                if (head != null && head.deadline <= now) {
+                    actions.poll().action.run();
+                    continue;
+                }
+
+                if (!incoming.isEmpty())
+                    continue;
+                if (head == null) {
+                    LockSupport.park(this);
+                } else {
+                    LockSupport.parkNanos(this, (head.deadline - now) * 1_000_000L);
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Action with its deadline.
+     */
+    private static final class Action implements Comparable<Action> {
+        final long deadline;
+        final Runnable action;
+        long sequence;
+
+        /**
+         * Create an action.
+         *
+         * @param deadline absolute deadline in ms
+         * @param action   action to run
+         */
+        Action(long deadline, Runnable action) {
+            this.deadline = deadline;
+            this.action = action;
+        }
+
+        @Override
+        public int compareTo(Action o) {
+            int c = Long.compare(deadline, o.deadline);
+            return c != 0 ? c : Long.compare(sequence, o.sequence);
+        }
+    }
+}
@@ -1,19 +1,39 @@
 package Utils;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Simple logical clock to order events by logical timestamp.
  * Implements atomic operations to advance and synchronize the clock.
+ * <p>
+ * The clock is lock-free: every operation is a single atomic update of an
+ * {@link AtomicLong}, so the threads of a node that share one clock never
+ * block each other.
  */
 public class LogicalClock {
-    private long time = 0;
+    private final AtomicLong time = new AtomicLong();
 
     /**
      * Increments the clock and returns the new value.
      *
      * @return new clock value after increment
      */
-    public synchronized long tick() {
-        return ++time;
+    public long tick() {
+        return time.incrementAndGet();
+    }
+
+    /**
+     * Advances the clock by {@code n} ticks at once, reserving {@code n}
+     * consecutive timestamps for a batch of events.
+     *
+     * @param n number of timestamps to reserve (must be > 0)
+     * @return first reserved timestamp; the batch uses {@code first} to
+     *         {@code first + n - 1}
+     */
+    public long tickN(int n) {
+        if (n <= 0)
+            throw new IllegalArgumentException("n must be > 0");
+        return time.getAndAdd(n) + 1;
     }
 
     /**
@@ -22,9 +42,8 @@ public class LogicalClock {
      * @param received timestamp received from another process
      * @return new clock value after update
      */
-    public synchronized long update(long received) {
-        time = Math.max(time, received) + 1;
-        return time;
+    public long update(long received) {
+        return time.updateAndGet(t -> Math.max(t, received) + 1);
     }
 
     /**
@@ -32,7 +51,7 @@ public class LogicalClock {
      *
      * @return clock value
      */
-    public synchronized long get() {
-        return time;
+    public long get() {
+        return time.get();
     }
 }
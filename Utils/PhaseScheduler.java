@@ -0,0 +1,257 @@
+package Utils;
+
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Signal-phase scheduler shared by the lights of one crossroad.
+ * <p>
+ * Each phase (0..N-1) is owned by one light thread. The owner calls
+ * {@link #awaitPhase(int)} to block until its phase starts and
+ * {@link #release()} when it is done. Every phase has its own
+ * {@link Semaphore}, so a hand-off wakes only the owner of the next phase.
+ * <p>
+ * Phases are served in index order. A phase may carry a weight, used to
+ * scale its green time ({@link #greenTime(int, long)}), and a demand
+ * supplier; a phase whose supplier reports no demand is skipped, unless
+ * no phase has demand, in which case the plain next phase is served.
+ * A phase selector, if set, replaces this order altogether and may also
+ * grant the current phase again.
+ * <p>
+ * The scheduler records when each phase last started and the hand-off
+ * latency (from {@link #release()} until the next owner runs), in
+ * microseconds.
+ */
+public class PhaseScheduler {
+    private final int totalPhases;
+    private final Semaphore[] grants;
+    private final double[] weights;
+    private final BooleanSupplier[] demand;
+    private volatile IntUnaryOperator selector;
+    private final AtomicLongArray phaseStart;
+
+    private volatile int currentPhase = -1;
+    private volatile long releaseNanos = 0L;
+
+    private final AtomicLong handoffCount = new AtomicLong();
+    private final AtomicLong handoffTotalMicros = new AtomicLong();
+    private final AtomicLong handoffMaxMicros = new AtomicLong();
+    private volatile long lastHandoffMicros = 0L;
+
+    /**
+     * Create a scheduler with the given number of phases. Phase 0 is
+     * granted first; all phases have weight 1 and are never skipped.
+     *
+     * @param totalPhases number of phases (must be > 0)
+     */
+    public PhaseScheduler(int totalPhases) {
+        if (totalPhases <= 0)
+            throw new IllegalArgumentException("totalPhases must be > 0");
+        this.totalPhases = totalPhases;
+        this.grants = new Semaphore[totalPhases];
+        for (int i = 0; i < totalPhases; i++) {
+            this.grants[i] = new Semaphore(i == 0 ? 1 : 0);
+        }
+        this.weights = new double[totalPhases];
+        Arrays.fill(this.weights, 1.0);
+        this.demand = new BooleanSupplier[totalPhases];
+        this.phaseStart = new AtomicLongArray(totalPhases);
+    }
+
+    /**
+     * Sets the weight of a phase, used to scale its green time.
+     *
+     * @param phase  phase index
+     * @param weight green time multiplier (must be > 0)
+     */
+    public void setWeight(int phase, double weight) {
+        if (weight <= 0)
+            throw new IllegalArgumentException("weight must be > 0");
+        this.weights[phase] = weight;
+    }
+
+    /**
+     * Makes a phase skippable: it is served only when {@code demand} returns
+     * {@code true} at hand-off time.
+     *
+     * @param phase  phase index
+     * @param demand demand supplier, or {@code null} to always serve the phase
+     */
+    public void setDemand(int phase, BooleanSupplier demand) {
+        this.demand[phase] = demand;
+    }
+
+    /**
+     * Replaces the cyclic phase order: at every hand-off the selector gets
+     * the ending phase and returns the phase to grant next.
+     *
+     * @param selector phase selector, or {@code null} for the cyclic order
+     */
+    public void setSelector(IntUnaryOperator selector) {
+        this.selector = selector;
+    }
+
+    /**
+     * Blocks until the given phase is granted.
+     *
+     * @param phase phase index
+     * @throws InterruptedException if waiting is interrupted
+     */
+    public void awaitPhase(int phase) throws InterruptedException {
+        grants[phase].acquire();
+        startPhase(phase);
+    }
+
+    /**
+     * Starts the given phase if it is granted, without blocking. Used when
+     * the phases are driven by an {@link EventLoop} rather than by one thread
+     * per phase.
+     *
+     * @param phase phase index
+     * @return {@code true} if the phase was granted and is now current
+     */
+    public boolean tryAwaitPhase(int phase) {
+        if (!grants[phase].tryAcquire())
+            return false;
+        startPhase(phase);
+        return true;
+    }
+
+    /**
+     * Records the start of a granted phase.
+     *
+     * @param phase phase index
+     */
+    private void startPhase(int phase) {
+        long released = releaseNanos;
+        if (released != 0L)
+            recordHandoff((System.nanoTime() - released) / 1000L);
+        currentPhase = phase;
+        phaseStart.set(phase, System.currentTimeMillis());
+    }
+
+    /**
+     * Ends the current phase and grants the next phase with demand.
+     * Must only be called by the owner of the current phase.
+     *
+     * @return index of the granted phase
+     */
+    public int release() {
+        int next = nextPhase(currentPhase);
+        releaseNanos = System.nanoTime();
+        grants[next].release();
+        return next;
+    }
+
+    /**
+     * Selects the phase that follows {@code phase}: the selector's choice,
+     * or the next phase in order, skipping phases without demand.
+     *
+     * @param phase current phase
+     * @return next phase index
+     */
+    private int nextPhase(int phase) {
+        IntUnaryOperator s = selector;
+        if (s != null)
+            return s.applyAsInt(phase);
+        for (int i = 1; i <= totalPhases; i++) {
+            int candidate = Math.floorMod(phase + i, totalPhases);
+            BooleanSupplier d = demand[candidate];
+            if (d == null || d.getAsBoolean())
+                return candidate;
+        }
+        return Math.floorMod(phase + 1, totalPhases);
+    }
+
+    /**
+     * Records one hand-off latency sample.
+     *
+     * @param micros latency in microseconds
+     */
+    private void recordHandoff(long micros) {
+        lastHandoffMicros = micros;
+        handoffCount.incrementAndGet();
+        handoffTotalMicros.addAndGet(micros);
+        handoffMaxMicros.accumulateAndGet(micros, Math::max);
+    }
+
+    /**
+     * Returns the green time of a phase, scaled by its weight.
+     *
+     * @param phase    phase index
+     * @param baseTime base green time in ms
+     * @return weighted green time in ms
+     */
+    public long greenTime(int phase, long baseTime) {
+        return Math.round(baseTime * weights[phase]);
+    }
+
+    /**
+     * Returns the number of phases.
+     *
+     * @return number of phases
+     */
+    public int getTotalPhases() {
+        return totalPhases;
+    }
+
+    /**
+     * Returns the phase currently granted.
+     *
+     * @return current phase, or -1 before the first phase starts
+     */
+    public int getCurrentPhase() {
+        return currentPhase;
+    }
+
+    /**
+     * Returns when the given phase last started.
+     *
+     * @param phase phase index
+     * @return start timestamp in ms, or 0 if the phase never started
+     */
+    public long getPhaseStart(int phase) {
+        return phaseStart.get(phase);
+    }
+
+    /**
+     * Returns the number of hand-offs measured so far.
+     *
+     * @return hand-off count
+     */
+    public long getHandoffCount() {
+        return handoffCount.get();
+    }
+
+    /**
+     * Returns the latency of the last hand-off.
+     *
+     * @return latency in microseconds
+     */
+    public long getLastHandoffMicros() {
+        return lastHandoffMicros;
+    }
+
+    /**
+     * Returns the average hand-off latency.
+     *
+     * @return average latency in microseconds, or 0 if none was measured
+     */
+    public long getAverageHandoffMicros() {
+        long n = handoffCount.get();
+        return n == 0 ? 0L : handoffTotalMicros.get() / n;
+    }
+
+    /**
+     * Returns the largest hand-off latency measured.
+     *
+     * @return maximum latency in microseconds
+     */
+    public long getMaxHandoffMicros() {
+        return handoffMaxMicros.get();
+    }
+}
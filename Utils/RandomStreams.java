@@ -0,0 +1,51 @@
+package Utils;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random number streams of the simulation.
+ * <p>
+ * With the {@code simulation.seed} system property every stream is derived
+ * from that seed: stream {@code i} is the {@code i}-th split of a root
+ * {@link SplittableRandom} seeded with it, so each component drawing from
+ * its own stream (an entrance, a pedestrian button) gets the same numbers
+ * in every run and in every process, whatever the order in which the
+ * components start. Without a seed each stream is seeded at random.
+ */
+public final class RandomStreams {
+    private static final Long SEED;
+
+    static {
+        String seed = System.getProperty("simulation.seed");
+        SEED = (seed == null || seed.isEmpty()) ? null : Long.valueOf(seed);
+    }
+
+    private RandomStreams() {
+    }
+
+    /**
+     * Returns the seed of the run.
+     *
+     * @return the seed, or {@code null} if the run is not seeded
+     */
+    public static Long getSeed() {
+        return SEED;
+    }
+
+    /**
+     * Returns a random stream.
+     *
+     * @param index index of the stream, distinct for every component
+     * @return a new generator for the stream
+     */
+    public static SplittableRandom stream(int index) {
+        if (SEED == null)
+            return new SplittableRandom();
+        SplittableRandom root = new SplittableRandom(SEED);
+        SplittableRandom stream = root.split();
+        for (int i = 0; i < index; i++) {
+            stream = root.split();
+        }
+        return stream;
+    }
+}
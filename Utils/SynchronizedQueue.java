@@ -1,41 +1,148 @@
 package Utils;
 
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
 /**
- * Simple synchronized queue for communication between threads.
+ * Lock-free queue for communication between threads.
  * Implements essential blocking and non-blocking operations.
+ * <p>
+ * The queue is a linked multi-producer single-consumer queue: any number of
+ * threads may {@link #add(Object)} concurrently (one atomic swap each), but
+ * only one thread may take elements out ({@link #remove()}, {@link #poll()},
+ * {@link #peek()}, the {@code drainTo} methods and the waiting methods).
+ * That matches every hand-off in the simulator, where each queue has a
+ * single owning consumer thread. When the queue is empty the consumer parks
+ * and is unparked by the next producer, so no monitor is ever taken.
+ * {@link #size()} and {@link #peekLast()} may be called from any thread.
  *
  * @param <E> type of elements in the queue
  */
 public class SynchronizedQueue<E> {
-    private Queue<E> queue = new LinkedList<E>();
+    private final AtomicReference<Node<E>> tail;
+    private Node<E> head;
+    private final AtomicInteger size = new AtomicInteger();
+    private volatile Thread waiter;
 
     /**
-     * Adds an element to the queue and notifies waiting threads.
+     * Creates an empty queue.
+     */
+    public SynchronizedQueue() {
+        Node<E> stub = new Node<>(null);
+        this.head = stub;
+        this.tail = new AtomicReference<>(stub);
+    }
+
+    /**
+     * Adds an element to the queue and wakes the consumer if it is waiting.
      *
      * @param element element to add
      */
-    public synchronized void add(E element) {
-        queue.add(element);
-        notifyAll();
+    public void add(E element) {
+        Node<E> node = new Node<>(element);
+        size.incrementAndGet();
+        Node<E> prev = tail.getAndSet(node);
+        prev.next = node;
+        Thread w = waiter;
+        if (w != null)
+            LockSupport.unpark(w);
+    }
+
+    /**
+     * Adds several elements to the queue, in iteration order, with a single
+     * swap of the tail: the elements stay contiguous even when other
+     * producers add concurrently, and the consumer is woken once.
+     *
+     * @param elements elements to add
+     */
+    public void addAll(Collection<? extends E> elements) {
+        Iterator<? extends E> it = elements.iterator();
+        if (!it.hasNext())
+            return;
+        Node<E> first = new Node<>(it.next());
+        Node<E> last = first;
+        int n = 1;
+        while (it.hasNext()) {
+            Node<E> node = new Node<>(it.next());
+            last.next = node;
+            last = node;
+            n++;
+        }
+        size.addAndGet(n);
+        Node<E> prev = tail.getAndSet(last);
+        prev.next = first;
+        Thread w = waiter;
+        if (w != null)
+            LockSupport.unpark(w);
     }
 
     /**
      * Removes and returns the first element of the queue. If the queue is
-     * empty, waits until an element becomes available.
+     * empty, waits until an element becomes available. An interrupt does not
+     * abort the wait; the interrupt status is restored before returning.
      *
      * @return first element of the queue
      */
-    public synchronized E remove() {
-        while (queue.isEmpty()) {
-            try {
-                wait();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
+    public E remove() {
+        boolean interrupted = false;
+        E element;
+        while ((element = poll()) == null) {
+            waiter = Thread.currentThread();
+            if (head.next == null)
+                LockSupport.park(this);
+            waiter = null;
+            if (Thread.interrupted())
+                interrupted = true;
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        return element;
+    }
+
+    /**
+     * Waits until the queue holds at least one element, without removing it.
+     * <p>
+     * This lets a consumer block for work outside of any critical section
+     * and then take the element atomically with whatever else it updates.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void awaitNonEmpty() throws InterruptedException {
+        while (head.next == null) {
+            waiter = Thread.currentThread();
+            if (head.next == null)
+                LockSupport.park(this);
+            waiter = null;
+            if (Thread.interrupted())
+                throw new InterruptedException();
         }
-        return queue.poll();
+    }
+
+    /**
+     * Waits until the queue holds at least one element or the given deadline
+     * passes, without removing anything.
+     *
+     * @param deadlineMillis absolute deadline in {@link System#currentTimeMillis()} time
+     * @return {@code true} if the queue is not empty, {@code false} if the
+     *         deadline passed first
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitNonEmpty(long deadlineMillis) throws InterruptedException {
+        while (head.next == null) {
+            long remaining = deadlineMillis - System.currentTimeMillis();
+            if (remaining <= 0)
+                return false;
+            waiter = Thread.currentThread();
+            if (head.next == null)
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(remaining));
+            waiter = null;
+            if (Thread.interrupted())
+                throw new InterruptedException();
+        }
+        return true;
     }
 
     /**
@@ -44,8 +151,43 @@ public class SynchronizedQueue<E> {
      *
      * @return first element or {@code null} if the queue is empty
      */
-    public synchronized E poll() {
-        return queue.poll();
+    public E poll() {
+        Node<E> next = head.next;
+        if (next == null)
+            return null;
+        E element = next.value;
+        next.value = null;
+        head = next;
+        size.decrementAndGet();
+        return element;
+    }
+
+    /**
+     * Removes and returns the first element of the queue, waiting up to the
+     * given time for one to become available.
+     *
+     * @param timeout maximum time to wait
+     * @param unit    unit of {@code timeout}
+     * @return first element or {@code null} if the timeout elapsed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        E element = poll();
+        if (element != null)
+            return element;
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while ((element = poll()) == null) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0)
+                return null;
+            waiter = Thread.currentThread();
+            if (head.next == null)
+                LockSupport.parkNanos(this, remaining);
+            waiter = null;
+            if (Thread.interrupted())
+                throw new InterruptedException();
+        }
+        return element;
     }
 
     /**
@@ -53,8 +195,9 @@ public class SynchronizedQueue<E> {
      *
      * @return first element or {@code null}
      */
-    public synchronized E peek() {
-        return queue.peek();
+    public E peek() {
+        Node<E> next = head.next;
+        return (next == null) ? null : next.value;
     }
 
     /**
@@ -62,7 +205,67 @@ public class SynchronizedQueue<E> {
      *
      * @return last element or {@code null}
      */
-    public synchronized E peekLast() {
-        return ((LinkedList<E>) queue).peekLast();
+    public E peekLast() {
+        return tail.get().value;
+    }
+
+    /**
+     * Removes every available element and adds it to the given collection.
+     *
+     * @param c collection receiving the elements
+     * @return number of elements transferred
+     */
+    public int drainTo(Collection<? super E> c) {
+        int n = 0;
+        E element;
+        while ((element = poll()) != null) {
+            c.add(element);
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Removes at most {@code max} available elements and adds them to the
+     * given collection.
+     *
+     * @param c   collection receiving the elements
+     * @param max maximum number of elements to transfer
+     * @return number of elements transferred
+     */
+    public int drainTo(Collection<? super E> c, int max) {
+        int n = 0;
+        E element;
+        while (n < max && (element = poll()) != null) {
+            c.add(element);
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Returns the number of elements in the queue.
+     *
+     * @return queue size
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Linked node holding one element.
+     */
+    private static final class Node<E> {
+        volatile E value;
+        volatile Node<E> next;
+
+        /**
+         * Create a node holding the given element.
+         *
+         * @param value element (may be null for the stub node)
+         */
+        Node(E value) {
+            this.value = value;
+        }
     }
 }
@@ -0,0 +1,16 @@
+package Utils;
+
+/**
+ * Service that runs actions at absolute wall-clock deadlines.
+ */
+public interface TimerService {
+
+    /**
+     * Schedules an action to run once the given deadline is reached.
+     * Actions with a deadline in the past run as soon as possible.
+     *
+     * @param deadlineMillis absolute deadline in {@link System#currentTimeMillis()} time
+     * @param action         action to run
+     */
+    void schedule(long deadlineMillis, Runnable action);
+}
@@ -0,0 +1,219 @@
+package Utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hierarchical timing wheel shared by the components of a node process.
+ * <p>
+ * Time advances in ticks of {@value #TICK_MS} ms. The wheel has
+ * {@value #LEVELS} levels of {@value #SLOTS} slots; level {@code l} holds
+ * the timers due between {@code 64^l} and {@code 64^(l+1)} ticks ahead and
+ * is cascaded into the level below each time that level wraps, so
+ * scheduling and expiring a timer are both O(1). Timers beyond the last
+ * level wait in its furthest slot and are re-inserted when it comes round.
+ * <p>
+ * Only the timer thread touches the wheel: {@link #schedule(long, Runnable)}
+ * hands new timers over through a lock-free queue and unparks the thread.
+ * The thread parks until the next occupied level-0 slot or the next
+ * cascade, so it does not wake every tick, and when no timer is pending it
+ * parks until one is scheduled. Actions run on the timer thread and must
+ * therefore be short.
+ */
+public class TimingWheel extends Thread implements TimerService {
+    private static final long TICK_MS = 1;
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int LEVELS = 4;
+
+    private final List<List<ArrayDeque<Timer>>> wheel = new ArrayList<>(LEVELS);
+    private final ConcurrentLinkedQueue<Timer> incoming = new ConcurrentLinkedQueue<>();
+    private final long startMillis;
+    private long currentTick = 0;
+    private int pending = 0;
+
+    /**
+     * Create a timing wheel. The timer thread is a daemon and must be
+     * started with {@link #start()}.
+     */
+    public TimingWheel() {
+        super("TimingWheel");
+        setDaemon(true);
+        this.startMillis = System.currentTimeMillis();
+        for (int l = 0; l < LEVELS; l++) {
+            List<ArrayDeque<Timer>> level = new ArrayList<>(SLOTS);
+            for (int s = 0; s < SLOTS; s++) {
+                level.add(new ArrayDeque<>());
+            }
+            wheel.add(level);
+        }
+    }
+
+    /**
+     * Schedules an action at an absolute deadline. May be called from any
+     * thread.
+     *
+     * @param deadlineMillis absolute deadline in ms
+     * @param action         action to run on the timer thread
+     */
+    @Override
+    public void schedule(long deadlineMillis, Runnable action) {
+        long tick = Math.max(0L, (deadlineMillis - startMillis + TICK_MS - 1) / TICK_MS);
+        incoming.add(new Timer(tick, action));
+        LockSupport.unpark(this);
+    }
+
+    /**
+     * Timer loop: take new timers, advance the wheel to the current time
+     * running every expired action, then park until the next timer may be
+     * due.
+     */
+    @Override
+    public void run() {
+        List<Timer> expired = new ArrayList<>();
+        while (true) {
+            try {
+                Timer t;
+                while ((t = incoming.poll()) != null) {
+                    insert(t, expired);
+                }
+
+                long targetTick = (System.currentTimeMillis() - startMillis) / TICK_MS;
+                if (pending == 0) {
+                    currentTick = Math.max(currentTick, targetTick);
+                }
+                while (currentTick < targetTick) {
+                    advance(expired);
+                }
+
+                for (Timer e : expired) {
+                    runAction(e);
+                }
+                expired.clear();
+
+                if (!incoming.isEmpty())
+                    continue;
+                if (pending == 0) {
+                    LockSupport.park(this);
+                } else {
+                    long wakeMillis = startMillis + (currentTick + ticksUntilNextWork()) * TICK_MS;
+                    long delay = wakeMillis - System.currentTimeMillis();
+                    if (delay > 0)
+                        LockSupport.parkNanos(this, delay * 1_000_000L);
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Places a timer in the level matching its distance from the current
+     * tick, or in {@code expired} if it is already due.
+     *
+     * @param t       timer to insert
+     * @param expired list of timers to run now
+     */
+    private void insert(Timer t, List<Timer> expired) {
+        long delta = t.tick - currentTick;
+        if (delta <= 0) {
+            expired.add(t);
+            return;
+        }
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (SLOT_BITS * (level + 1)))) {
+            level++;
+        }
+        int slot;
+        if (delta >= (1L << (SLOT_BITS * LEVELS))) {
+            slot = (int) (((currentTick >> (SLOT_BITS * level)) - 1) & (SLOTS - 1));
+        } else {
+            slot = (int) ((t.tick >> (SLOT_BITS * level)) & (SLOTS - 1));
+        }
+        wheel.get(level).get(slot).add(t);
+        pending++;
+    }
+
+    /**
+     * Advances the wheel by one tick: cascades the upper levels that come
+     * round and collects the timers of the new level-0 slot.
+     *
+     * @param expired list receiving the expired timers
+     */
+    private void advance(List<Timer> expired) {
+        currentTick++;
+        for (int level = 1; level < LEVELS; level++) {
+            if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0)
+                break;
+            int slot = (int) ((currentTick >> (SLOT_BITS * level)) & (SLOTS - 1));
+            cascade(wheel.get(level).get(slot), expired);
+        }
+        cascade(wheel.get(0).get((int) (currentTick & (SLOTS - 1))), expired);
+    }
+
+    /**
+     * Empties a slot, re-inserting every timer relative to the current tick.
+     *
+     * @param slot    slot to empty
+     * @param expired list receiving the timers that are due
+     */
+    private void cascade(ArrayDeque<Timer> slot, List<Timer> expired) {
+        int n = slot.size();
+        pending -= n;
+        for (int i = 0; i < n; i++) {
+            insert(slot.poll(), expired);
+        }
+    }
+
+    /**
+     * Returns the number of ticks until the next occupied level-0 slot or
+     * the next cascade, whichever comes first.
+     *
+     * @return ticks to sleep (at least 1)
+     */
+    private long ticksUntilNextWork() {
+        List<ArrayDeque<Timer>> level0 = wheel.get(0);
+        long untilWrap = SLOTS - (currentTick & (SLOTS - 1));
+        for (long d = 1; d < untilWrap; d++) {
+            if (!level0.get((int) ((currentTick + d) & (SLOTS - 1))).isEmpty())
+                return d;
+        }
+        return untilWrap;
+    }
+
+    /**
+     * Runs the action of an expired timer, isolating the loop from its
+     * failures.
+     *
+     * @param t expired timer
+     */
+    private void runAction(Timer t) {
+        try {
+            t.action.run();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Scheduled action with its expiry tick.
+     */
+    private static final class Timer {
+        final long tick;
+        final Runnable action;
+
+        /**
+         * Create a timer.
+         *
+         * @param tick   expiry tick
+         * @param action action to run
+         */
+        Timer(long tick, Runnable action) {
+            this.tick = tick;
+            this.action = action;
+        }
+    }
+}
@@ -1,64 +1,157 @@
 package Vehicle;
 
+import java.io.InvalidObjectException;
+import java.io.Serializable;
 import java.util.*;
 
 import Node.*;
+import Traffic.RoadEnum;
 
 /**
- * Enumeration that defines the possible paths for vehicles.
+ * The possible paths for vehicles, as loaded from the {@link Topology}.
  * Each path is a sequence of nodes that the vehicle will follow.
+ * <p>
+ * Paths behave like enum constants: one instance per path in each process
+ * (deserialized paths resolve to it), named by their nodes joined with
+ * {@code _}.
+ * <p>
+ * The node sequence, the roads along it and the next and previous hop of
+ * every node (indexed by {@link NodeEnum} ordinal) are computed once when
+ * the class is loaded, so routing a vehicle neither allocates nor scans the
+ * path.
  */
-public enum PathEnum {
-    E1_CR1_CR4_CR5_S(100),
-    E1_CR1_CR2_CR5_S(1),
-    E1_CR1_CR2_CR3_S(1),
-    E2_CR2_CR5_S(34),
-    E2_CR2_CR3_S(33),
-    E2_CR2_CR1_CR4_CR5_S(33),
-    E3_CR3_S(34),
-    E3_CR3_CR2_CR5_S(33),
-    E3_CR3_CR2_CR1_CR4_CR5_S(33);
+public final class PathEnum implements Serializable, Comparable<PathEnum> {
+    private static final long serialVersionUID = 1L;
 
+    private static final PathEnum[] VALUES;
+    private static final Map<String, PathEnum> BY_NAME = new HashMap<>();
+
+    static {
+        List<Topology.PathSpec> specs = Topology.get().getPaths();
+        VALUES = new PathEnum[specs.size()];
+        for (int i = 0; i < specs.size(); i++) {
+            Topology.PathSpec s = specs.get(i);
+            List<NodeEnum> nodes = new ArrayList<>();
+            for (String n : s.nodes) {
+                nodes.add(NodeEnum.toNodeEnum(n));
+            }
+            PathEnum path = new PathEnum(i, s.weight, nodes);
+            VALUES[i] = path;
+            BY_NAME.put(path.name, path);
+        }
+    }
+
+    private final String name;
+    private final int ordinal;
     private final int probToBeSelected;
+    private final transient List<NodeEnum> nodes;
+    private final transient List<RoadEnum> roads;
+    private final transient NodeEnum[] nextHop;
+    private final transient NodeEnum[] previousHop;
 
     /**
-     * Create a path enumeration value with the given selection weight.
+     * Create a path with the given selection weight.
      *
+     * @param ordinal          index of the path in {@link #values()}
      * @param probToBeSelected integer value representing the relative probability
+     * @param nodes            nodes of the path, in order
      */
-    PathEnum(int probToBeSelected) {
+    private PathEnum(int ordinal, int probToBeSelected, List<NodeEnum> nodes) {
+        this.ordinal = ordinal;
         this.probToBeSelected = probToBeSelected;
+        this.nextHop = new NodeEnum[NodeEnum.count()];
+        this.previousHop = new NodeEnum[NodeEnum.count()];
+        List<RoadEnum> roads = new ArrayList<>();
+        StringJoiner joined = new StringJoiner("_");
+        joined.add(nodes.get(0).name());
+        for (int i = 0; i + 1 < nodes.size(); i++) {
+            NodeEnum from = nodes.get(i);
+            NodeEnum to = nodes.get(i + 1);
+            this.nextHop[from.ordinal()] = to;
+            this.previousHop[to.ordinal()] = from;
+            roads.add(RoadEnum.between(from, to));
+            joined.add(to.name());
+        }
+        this.name = joined.toString();
+        this.nodes = Collections.unmodifiableList(nodes);
+        this.roads = Collections.unmodifiableList(roads);
+    }
+
+    /**
+     * Returns every path, in topology order.
+     *
+     * @return new array with all paths
+     */
+    public static PathEnum[] values() {
+        return VALUES.clone();
+    }
+
+    /**
+     * Convert a string identifier to its {@link PathEnum} value.
+     *
+     * @param pathStr path name (for example "E1_CR1_CR4_CR5_S")
+     * @return matching {@link PathEnum} or {@code null} if not found
+     */
+    public static PathEnum toPathEnum(String pathStr) {
+        return pathStr == null ? null : BY_NAME.get(pathStr);
+    }
+
+    /**
+     * Returns the path name, its nodes joined with {@code _}.
+     *
+     * @return path name
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Returns the index of the path in {@link #values()}.
+     *
+     * @return path ordinal
+     */
+    public int ordinal() {
+        return ordinal;
     }
 
     /**
      * Returns the sequence of nodes for the path
      *
-     * @return Ordered list of nodes
+     * @return Ordered, unmodifiable list of nodes
      */
     public List<NodeEnum> getPath() {
-        switch (this) {
-            case E1_CR1_CR4_CR5_S:
-                return Arrays.asList(NodeEnum.E1, NodeEnum.CR1, NodeEnum.CR4, NodeEnum.CR5, NodeEnum.S);
-            case E1_CR1_CR2_CR5_S:
-                return Arrays.asList(NodeEnum.E1, NodeEnum.CR1, NodeEnum.CR2, NodeEnum.CR5, NodeEnum.S);
-            case E1_CR1_CR2_CR3_S:
-                return Arrays.asList(NodeEnum.E1, NodeEnum.CR1, NodeEnum.CR2, NodeEnum.CR3, NodeEnum.S);
-            case E2_CR2_CR5_S:
-                return Arrays.asList(NodeEnum.E2, NodeEnum.CR2, NodeEnum.CR5, NodeEnum.S);
-            case E2_CR2_CR3_S:
-                return Arrays.asList(NodeEnum.E2, NodeEnum.CR2, NodeEnum.CR3, NodeEnum.S);
-            case E2_CR2_CR1_CR4_CR5_S:
-                return Arrays.asList(NodeEnum.E2, NodeEnum.CR2, NodeEnum.CR1, NodeEnum.CR4, NodeEnum.CR5, NodeEnum.S);
-            case E3_CR3_S:
-                return Arrays.asList(NodeEnum.E3, NodeEnum.CR3, NodeEnum.S);
-            case E3_CR3_CR2_CR5_S:
-                return Arrays.asList(NodeEnum.E3, NodeEnum.CR3, NodeEnum.CR2, NodeEnum.CR5, NodeEnum.S);
-            case E3_CR3_CR2_CR1_CR4_CR5_S:
-                return Arrays.asList(NodeEnum.E3, NodeEnum.CR3, NodeEnum.CR2, NodeEnum.CR1, NodeEnum.CR4, NodeEnum.CR5,
-                        NodeEnum.S);
-            default:
-                return Collections.emptyList();
-        }
+        return nodes;
+    }
+
+    /**
+     * Returns the roads along the path, in order.
+     *
+     * @return unmodifiable list of roads
+     */
+    public List<RoadEnum> getRoads() {
+        return roads;
+    }
+
+    /**
+     * Returns the node that follows the given node on this path.
+     *
+     * @param node current node
+     * @return next node, or {@code null} if {@code node} is the last node or
+     *         not on the path
+     */
+    public NodeEnum nextHop(NodeEnum node) {
+        return node == null ? null : nextHop[node.ordinal()];
+    }
+
+    /**
+     * Returns the node that precedes the given node on this path.
+     *
+     * @param node current node
+     * @return previous node, or {@code null} if {@code node} is the first
+     *         node or not on the path
+     */
+    public NodeEnum previousHop(NodeEnum node) {
+        return node == null ? null : previousHop[node.ordinal()];
     }
 
     /**
@@ -67,47 +160,43 @@ public enum PathEnum {
      * @param entrance entrance node (Ex. E1, E2, E3)
      * @return list of {@link PathEnum} that start at the given entrance
      */
-
     public static List<PathEnum> getPathsFromEntrance(NodeEnum entrance) {
         List<PathEnum> paths = new ArrayList<>();
-        for (PathEnum path : PathEnum.values()) {
-            if (path.getPath().get(0) == entrance) {
+        for (PathEnum path : VALUES) {
+            if (path.nodes.get(0) == entrance) {
                 paths.add(path);
             }
         }
         return paths;
     }
 
+    public int getProbToBeSelected() {
+        return probToBeSelected;
+    }
+
+    @Override
+    public int compareTo(PathEnum o) {
+        return Integer.compare(ordinal, o.ordinal);
+    }
+
+    /**
+     * Resolve a deserialized path to the instance of this process.
+     *
+     * @return the canonical path
+     * @throws InvalidObjectException if the path is not in the topology
+     */
+    private Object readResolve() throws InvalidObjectException {
+        PathEnum path = BY_NAME.get(name);
+        if (path == null)
+            throw new InvalidObjectException("Unknown path " + name);
+        return path;
+    }
+
     /**
      * Returns the string representation of the path
      */
     @Override
     public String toString() {
-        switch (this) {
-            case E1_CR1_CR4_CR5_S:
-                return "E1 -> CR1 -> CR4 -> CR5 -> S";
-            case E1_CR1_CR2_CR5_S:
-                return "E1 -> CR1 -> CR2 -> CR5 -> S";
-            case E1_CR1_CR2_CR3_S:
-                return "E1 -> CR1 -> CR2 -> CR3 -> S";
-            case E2_CR2_CR5_S:
-                return "E2 -> CR2 -> CR5 -> S";
-            case E2_CR2_CR3_S:
-                return "E2 -> CR2 -> CR3 -> S";
-            case E2_CR2_CR1_CR4_CR5_S:
-                return "E2 -> CR2 -> CR1 -> CR4 -> CR5 -> S";
-            case E3_CR3_S:
-                return "E3 -> CR3 -> S";
-            case E3_CR3_CR2_CR5_S:
-                return "E3 -> CR3 -> CR2 -> CR5 -> S";
-            case E3_CR3_CR2_CR1_CR4_CR5_S:
-                return "E3 -> CR3 -> CR2 -> CR1 -> CR4 -> CR5 -> S";
-            default:
-                return "Unknown Path";
-        }
-    }
-
-    public int getProbToBeSelected() {
-        return probToBeSelected;
+        return name.replace("_", " -> ");
     }
-}
\ No newline at end of file
+}
@@ -1,6 +1,9 @@
 package Vehicle;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import Node.NodeEnum;
 
@@ -8,7 +11,12 @@ import Node.NodeEnum;
  * Represents a vehicle in the simulator.
  * <p>
  * Each vehicle has an identifier, a type (car, truck, motorcycle), a path
- * (sequence of nodes), and entry/exit timestamps within the system.
+ * (sequence of nodes), entry/exit timestamps within the system, the time it
+ * cleared the last junction and the lane it took on its current road.
+ * <p>
+ * The path is the route planned at the entrance. With dynamic routing a
+ * crossroad may send the vehicle elsewhere, so the vehicle also keeps a
+ * trace of the nodes it has left; the previous hop is taken from the trace.
  */
 public class Vehicle implements Serializable {
     private static final long serialVersionUID = 1L;
@@ -16,7 +24,11 @@ public class Vehicle implements Serializable {
     private VehicleType type;
     private long entranceTime;
     private long exitTime;
+    private long departureTime;
+    private int lane;
+    private NodeEnum nextHop;
     private PathEnum path;
+    private final ArrayList<NodeEnum> trace = new ArrayList<>();
 
     /**
      * Vehicle constructor.
@@ -85,6 +97,55 @@ public class Vehicle implements Serializable {
         this.exitTime = exitTime;
     }
 
+    /**
+     * Returns the time the vehicle cleared the last junction it crossed and
+     * started on its current road (ms), or 0 if it has not crossed one yet.
+     *
+     * @return departure time in milliseconds
+     */
+    public long getDepartureTime() {
+        return departureTime;
+    }
+
+    /**
+     * Sets the time the vehicle clears the junction it is crossing.
+     *
+     * @param departureTime time in milliseconds
+     */
+    public void setDepartureTime(long departureTime) {
+        this.departureTime = departureTime;
+    }
+
+    /**
+     * Returns the lane the vehicle took on its current road.
+     *
+     * @return lane index (0 on single-lane roads)
+     */
+    public int getLane() {
+        return lane;
+    }
+
+    /**
+     * Returns the next node chosen when the vehicle took its lane.
+     *
+     * @return next node, or {@code null} if it is chosen at the signal
+     */
+    public NodeEnum getNextHop() {
+        return nextHop;
+    }
+
+    /**
+     * Puts the vehicle in a lane of its current road, committing it to the
+     * next node that lane leads to.
+     *
+     * @param lane    lane index
+     * @param nextHop next node, or {@code null} to choose it at the signal
+     */
+    public void setLane(int lane, NodeEnum nextHop) {
+        this.lane = lane;
+        this.nextHop = nextHop;
+    }
+
     /**
      * Returns the vehicle path (sequence of nodes).
      *
@@ -94,6 +155,48 @@ public class Vehicle implements Serializable {
         return path;
     }
 
+    /**
+     * Returns the vehicle destination, the last node of its path.
+     *
+     * @return exit node the vehicle is heading to
+     */
+    public NodeEnum getDestination() {
+        List<NodeEnum> nodes = this.path.getPath();
+        return nodes.get(nodes.size() - 1);
+    }
+
+    /**
+     * Records that the vehicle is leaving a node. Called before the vehicle
+     * is sent to the next node. The next node chosen with the lane is
+     * forgotten, as it only held on the road being left; the lane itself is
+     * kept for the departure report.
+     *
+     * @param node node the vehicle departs from
+     */
+    public void recordHop(NodeEnum node) {
+        this.trace.add(node);
+        this.nextHop = null;
+    }
+
+    /**
+     * Returns the nodes the vehicle has left, in order.
+     *
+     * @return unmodifiable list of visited nodes
+     */
+    public List<NodeEnum> getTrace() {
+        return Collections.unmodifiableList(this.trace);
+    }
+
+    /**
+     * Returns whether the vehicle has already left the given node.
+     *
+     * @param node node to check
+     * @return true if the node is in the trace
+     */
+    public boolean hasVisited(NodeEnum node) {
+        return this.trace.contains(node);
+    }
+
     /**
      * Returns the next node in the path relative to the current node.
      *
@@ -101,26 +204,24 @@ public class Vehicle implements Serializable {
      * @return next node if present, otherwise {@code null}
      */
     public NodeEnum findNextNode(NodeEnum current) {
-        java.util.List<NodeEnum> list = this.path.getPath();
-        for (int i = 0; i < list.size() - 1; i++)
-            if (list.get(i) == current)
-                return list.get(i + 1);
-
-        return null;
+        return this.path.nextHop(current);
     }
 
     /**
-     * Returns the previous node in the path relative to the current node.
+     * Returns the node the vehicle came from to reach the current node: the
+     * last node left or, once the vehicle has left {@code current} too, the
+     * one before it. Vehicles without a trace fall back to their path.
      *
      * @param current current node
      * @return previous node if present, otherwise {@code null}
      */
     public NodeEnum findPreviousNode(NodeEnum current) {
-        java.util.List<NodeEnum> list = this.path.getPath();
-        for (int i = 1; i < list.size(); i++)
-            if (list.get(i) == current)
-                return list.get(i - 1);
-
-        return null;
+        int size = this.trace.size();
+        if (size == 0)
+            return this.path.previousHop(current);
+        NodeEnum last = this.trace.get(size - 1);
+        if (last != current)
+            return last;
+        return size > 1 ? this.trace.get(size - 2) : null;
     }
 }
\ No newline at end of file
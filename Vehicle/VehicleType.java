@@ -1,24 +1,56 @@
 package Vehicle;
 
+import java.util.Arrays;
+
+import Utils.AliasTable;
+
 /**
  * Vehicle types supported by the simulator.
  * <p>
- * Each type contains a multiplier to adjust the base road traversal time.
+ * Each type contains a multiplier to adjust the base road traversal time
+ * and the road space it takes, in half car lengths.
+ * <p>
+ * New vehicles draw their type from the traffic mix given by the
+ * {@code simulation.vehicleMix} system property as relative weights, for
+ * example {@code CAR:6,TRUCK:1,MOTORCYCLE:3}; types left out get weight 0.
+ * Without it every type is equally likely.
  */
 public enum VehicleType {
-    CAR(1.0),
-    TRUCK(2.0),
-    MOTORCYCLE(0.5);
+    CAR(1.0, 2),
+    TRUCK(2.0, 4),
+    MOTORCYCLE(0.5, 1);
+
+    private static final AliasTable<VehicleType> MIX;
+
+    static {
+        VehicleType[] types = values();
+        double[] weights = new double[types.length];
+        String mix = System.getProperty("simulation.vehicleMix");
+        if (mix == null || mix.isEmpty()) {
+            Arrays.fill(weights, 1.0);
+        } else {
+            for (String entry : mix.split(",")) {
+                String[] kv = entry.trim().split(":");
+                if (kv.length != 2)
+                    throw new IllegalArgumentException("simulation.vehicleMix: expected TYPE:weight, got " + entry);
+                weights[valueOf(kv[0].trim()).ordinal()] = Double.parseDouble(kv[1].trim());
+            }
+        }
+        MIX = new AliasTable<>(Arrays.asList(types), weights);
+    }
 
     private final double multiplier;
+    private final int length;
 
     /**
-     * Create a vehicle type with the given time multiplier.
+     * Create a vehicle type with the given time multiplier and length.
      *
      * @param multiplier multiplier applied to base road time
+     * @param length     road space taken, in half car lengths
      */
-    VehicleType(double multiplier) {
+    VehicleType(double multiplier, int length) {
         this.multiplier = multiplier;
+        this.length = length;
     }
 
     /**
@@ -30,6 +62,15 @@ public enum VehicleType {
         return multiplier;
     }
 
+    /**
+     * Returns the road space taken by a vehicle of this type.
+     *
+     * @return length in half car lengths (Ex. 2 for car, 4 for truck)
+     */
+    public int getLength() {
+        return length;
+    }
+
     /**
      * Calculates the time needed for this vehicle to pass a road given the
      * base road time.
@@ -41,6 +82,16 @@ public enum VehicleType {
         return (long) (baseTimeMs * multiplier);
     }
 
+    /**
+     * Draws the type of a new vehicle from the traffic mix.
+     *
+     * @param u uniform random number in [0, 1)
+     * @return vehicle type
+     */
+    public static VehicleType sample(double u) {
+        return MIX.sample(u);
+    }
+
     /**
      * String representation of the vehicle type.
      *